@@ -0,0 +1,1474 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BoardEvaluator scores a board after a placement as a weighted sum of
+ * classic features: landing height, aggregate height, holes, bumpiness,
+ * wells, row and column transitions and lines cleared. Higher is better.
+ * All features are read from the grid's column counters and row bitmasks,
+ * so an evaluation allocates nothing.
+ */
+class BoardEvaluator {
+    static final int LANDING_HEIGHT = 0;
+    static final int AGGREGATE_HEIGHT = 1;
+    static final int HOLES = 2;
+    static final int BUMPINESS = 3;
+    static final int WELLS = 4;
+    static final int ROW_TRANSITIONS = 5;
+    static final int COLUMN_TRANSITIONS = 6;
+    static final int LINES = 7;
+    static final int FEATURES = 8;
+    
+    static final String[] FEATURE_NAMES = {
+        "landingHeight", "aggregateHeight", "holes", "bumpiness",
+        "wells", "rowTransitions", "columnTransitions", "lines"
+    };
+    
+    // Pierre Dellacherie's features with the El-Tetris weights
+    private static final double[] DEFAULT_WEIGHTS = {
+        -4.500158825082766, 0, -7.899265427351652, 0,
+        -3.3855972247263626, -3.2178882868487753, -9.348695305445199, 3.4181268101392694
+    };
+    
+    private final double[] weights;
+    
+    /**
+     * Creates a new BoardEvaluator with the default weights.
+     */
+    public BoardEvaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+    
+    /**
+     * Creates a new BoardEvaluator with the given weights.
+     * 
+     * @param weights One weight per feature, indexed by the feature constants
+     */
+    public BoardEvaluator(double[] weights) {
+        if (weights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights, got " + weights.length);
+        }
+        this.weights = weights.clone();
+    }
+    
+    /**
+     * Scores a board that a placement has just been locked into.
+     * 
+     * @param grid The board after locking the piece and clearing lines
+     * @param placement The placement that was made
+     * @param lines The number of lines the placement cleared
+     * @return The score, higher is better
+     */
+    public double evaluate(GameGrid grid, int placement, int lines) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        
+        // Landing height is measured at the middle of the piece, before clearing
+        int pieceRows = Block.rowMasks(Placement.getType(placement), Placement.getRotation(placement)).length;
+        double landingHeight = height - Placement.getY(placement) - (pieceRows - 1) / 2.0;
+        
+        int aggregateHeight = 0;
+        int holes = 0;
+        int bumpiness = 0;
+        int wells = 0;
+        int left = height;
+        int current = grid.getColumnHeight(0);
+        for (int x = 0; x < width; x++) {
+            int right = x + 1 < width ? grid.getColumnHeight(x + 1) : height;
+            aggregateHeight += current;
+            holes += grid.getColumnHoles(x);
+            if (x + 1 < width) {
+                bumpiness += Math.abs(current - right);
+            }
+            int depth = Math.min(left, right) - current;
+            if (depth > 0) {
+                wells += depth * (depth + 1) / 2;
+            }
+            left = current;
+            current = right;
+        }
+        
+        // Walls count as filled for row transitions, the floor for column transitions.
+        // Every empty row above the stack has its two wall transitions, as in El-Tetris
+        int stackHeight = grid.getStackHeight();
+        int rowTransitions = 2 * (height - stackHeight);
+        int columnTransitions = 0;
+        long walls = 1L | 1L << (width + 1);
+        long edges = (1L << (width + 1)) - 1;
+        long above = 0;
+        for (int y = height - stackHeight; y < height; y++) {
+            long bits = grid.getRowBits(y);
+            long row = bits << 1 | walls;
+            rowTransitions += Long.bitCount((row ^ row >>> 1) & edges);
+            columnTransitions += Long.bitCount(bits ^ above);
+            above = bits;
+        }
+        columnTransitions += width - Long.bitCount(above);
+        
+        return weights[LANDING_HEIGHT] * landingHeight
+                + weights[AGGREGATE_HEIGHT] * aggregateHeight
+                + weights[HOLES] * holes
+                + weights[BUMPINESS] * bumpiness
+                + weights[WELLS] * wells
+                + weights[ROW_TRANSITIONS] * rowTransitions
+                + weights[COLUMN_TRANSITIONS] * columnTransitions
+                + weights[LINES] * lines;
+    }
+    
+    /**
+     * Gets a copy of the weights.
+     * 
+     * @return One weight per feature
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+}
+
+/**
+ * PlanningBot is the base of bots that choose a placement once per piece.
+ * It asks the subclass for a path to the chosen placement, walks it one
+ * button per tick and hard drops once only falling straight down is left.
+ * If gravity moves the piece off the planned path, it plans again from
+ * where the piece is.
+ */
+abstract class PlanningBot implements Policy {
+    private final int[] path;
+    private int pathLength;
+    private int pathIndex;
+    private int plannedPiece = -1;
+    private int expectedX;
+    private int expectedY;
+    private int expectedRotation;
+    
+    /**
+     * Creates a new PlanningBot.
+     * 
+     * @param maxPathLength The longest path a plan can have
+     */
+    protected PlanningBot(int maxPathLength) {
+        this.path = new int[maxPathLength];
+    }
+    
+    @Override
+    public InputFrame nextInput(GameEngine engine) {
+        if (engine.isGameOver()) {
+            return InputFrame.NONE;
+        }
+        Block block = engine.getCurrentBlock();
+        if (engine.getPiecesPlaced() != plannedPiece || block.getX() != expectedX
+                || block.getY() != expectedY || block.getRotation() != expectedRotation) {
+            startPlan(engine, block);
+        }
+        if (pathIndex >= pathLength) {
+            return InputFrame.of(InputFrame.HARD_DROP);
+        }
+        
+        int move = path[pathIndex++];
+        switch (move) {
+            case InputFrame.ROTATE:
+                expectedRotation = (expectedRotation + 1) & (Block.ROTATIONS - 1);
+                break;
+            case InputFrame.LEFT:
+                expectedX--;
+                break;
+            case InputFrame.RIGHT:
+                expectedX++;
+                break;
+            default:
+                expectedY++;
+                break;
+        }
+        return InputFrame.of(move);
+    }
+    
+    /**
+     * Plans the current block and prepares the path to follow.
+     * Trailing soft drops are left out, the final hard drop covers them.
+     * 
+     * @param engine The game being played
+     * @param block The current block
+     */
+    private void startPlan(GameEngine engine, Block block) {
+        plannedPiece = engine.getPiecesPlaced();
+        expectedX = block.getX();
+        expectedY = block.getY();
+        expectedRotation = block.getRotation();
+        pathIndex = 0;
+        pathLength = Math.max(0, plan(engine, block, path));
+        while (pathLength > 0 && path[pathLength - 1] == InputFrame.DOWN) {
+            pathLength--;
+        }
+    }
+    
+    /**
+     * Chooses a placement for the current block.
+     * 
+     * @param engine The game being played
+     * @param block The current block
+     * @param path Receives the InputFrame bits leading to the placement
+     * @return The number of inputs written, or -1 if there is no placement
+     */
+    protected abstract int plan(GameEngine engine, Block block, int[] path);
+}
+
+/**
+ * HeuristicBot plays by trying every reachable placement of the current
+ * piece on a scratch grid and picking the one the BoardEvaluator likes best.
+ */
+class HeuristicBot extends PlanningBot {
+    private final BoardEvaluator evaluator;
+    private final MoveGenerator generator;
+    private final GameGrid scratch;
+    private long evaluations;
+    
+    /**
+     * Creates a new HeuristicBot with the default evaluator.
+     * 
+     * @param width The grid width of the games it plays
+     * @param height The grid height of the games it plays
+     */
+    public HeuristicBot(int width, int height) {
+        this(new BoardEvaluator(), width, height);
+    }
+    
+    /**
+     * Creates a new HeuristicBot.
+     * 
+     * @param evaluator The evaluator scoring the placements
+     * @param width The grid width of the games it plays
+     * @param height The grid height of the games it plays
+     */
+    public HeuristicBot(BoardEvaluator evaluator, int width, int height) {
+        this(evaluator, new MoveGenerator(width, height));
+    }
+    
+    private HeuristicBot(BoardEvaluator evaluator, MoveGenerator generator) {
+        super(generator.getMaxPathLength());
+        this.evaluator = evaluator;
+        this.generator = generator;
+        this.scratch = new GameGrid(generator.getWidth(), generator.getHeight());
+    }
+    
+    @Override
+    protected int plan(GameEngine engine, Block block, int[] path) {
+        int best = choose(engine.getGrid(), block);
+        return best < 0 ? -1 : generator.getPath(best, path);
+    }
+    
+    /**
+     * Evaluates every placement reachable from a block's pose.
+     * The placements stay available from the move generator afterwards.
+     * 
+     * @param grid The board to place on
+     * @param block The block to place
+     * @return The index of the best placement, or -1 if there is none
+     */
+    public int choose(GameGrid grid, Block block) {
+        int count = generator.generate(grid, block);
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double score = evaluate(grid, generator.getPlacement(i));
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Scores one placement on the scratch grid.
+     * 
+     * @param grid The board to place on, left unchanged
+     * @param placement The placement
+     * @return The evaluator score
+     */
+    public double evaluate(GameGrid grid, int placement) {
+        scratch.copyFrom(grid);
+        Placement.lock(placement, scratch);
+        int lines = scratch.clearLines();
+        evaluations++;
+        return evaluator.evaluate(scratch, placement, lines);
+    }
+    
+    /**
+     * Gets the move generator holding the placements of the last search.
+     * 
+     * @return The MoveGenerator instance
+     */
+    public MoveGenerator getGenerator() {
+        return generator;
+    }
+    
+    /**
+     * Gets the number of placements evaluated so far.
+     * 
+     * @return The evaluation count
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
+
+/**
+ * BeamSearch looks ahead over the current piece and the visible preview.
+ * Each ply expands every board in the beam with all reachable placements of
+ * the ply's piece, scores the children with a BoardEvaluator and keeps the
+ * best beamWidth of them. The line clear rewards of earlier plies are carried
+ * along, so a deep child is not punished for lines its ancestors cleared.
+ * The boards of a ply are expanded in parallel on a ForkJoinPool, each with
+ * its own move generator and scratch grid from a preallocated set.
+ * 
+ * A search has a hard time budget: when it runs out, the unfinished ply is
+ * dropped and the best first placement of the last complete ply is returned.
+ * The first ply always completes, so there is always a move if one exists.
+ */
+class BeamSearch {
+    private final BoardEvaluator evaluator;
+    private final double lineWeight;
+    private final int beamWidth;
+    private final int depth;
+    private final ForkJoinPool pool;
+    private final int maxPlacements;
+    
+    private final MoveGenerator rootGenerator;
+    private final MoveGenerator[] generators;
+    private final GameGrid[] scratch;
+    private GameGrid[] beam;
+    private GameGrid[] nextBeam;
+    private double[] beamRewards;
+    private double[] nextRewards;
+    private int[] beamRoots;
+    private int[] nextRoots;
+    private int beamSize;
+    
+    private final int[] candidateCounts;
+    private final int[] candidatePlacements;
+    private final double[] candidateValues;
+    private final double[] candidateRewards;
+    private final long[] candidateKeys;
+    private final int[] heap;
+    private TranspositionTable table;
+    
+    private long deadline;
+    private long searches;
+    private volatile boolean timedOut;
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private int bestPlacement;
+    private int depthReached;
+    private long elapsedNanos;
+    
+    /**
+     * Creates a new BeamSearch running on the common ForkJoinPool.
+     * 
+     * @param evaluator The evaluator scoring the boards
+     * @param width The grid width
+     * @param height The grid height
+     * @param beamWidth The number of boards kept per ply
+     * @param depth The number of pieces to look at, the current one included
+     */
+    public BeamSearch(BoardEvaluator evaluator, int width, int height, int beamWidth, int depth) {
+        this(evaluator, width, height, beamWidth, depth, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Creates a new BeamSearch running on the given pool.
+     * 
+     * @param evaluator The evaluator scoring the boards
+     * @param width The grid width
+     * @param height The grid height
+     * @param beamWidth The number of boards kept per ply
+     * @param depth The number of pieces to look at, the current one included
+     * @param pool The pool the boards of a ply are expanded on
+     */
+    public BeamSearch(BoardEvaluator evaluator, int width, int height, int beamWidth, int depth, ForkJoinPool pool) {
+        if (beamWidth < 1 || depth < 1) {
+            throw new IllegalArgumentException("Unsupported beam: width " + beamWidth + ", depth " + depth);
+        }
+        this.evaluator = evaluator;
+        this.lineWeight = evaluator.getWeights()[BoardEvaluator.LINES];
+        this.beamWidth = beamWidth;
+        this.depth = depth;
+        this.pool = pool;
+        this.rootGenerator = new MoveGenerator(width, height);
+        this.maxPlacements = rootGenerator.getMaxPathLength();
+        
+        this.generators = new MoveGenerator[beamWidth];
+        this.scratch = new GameGrid[beamWidth];
+        this.beam = new GameGrid[beamWidth];
+        this.nextBeam = new GameGrid[beamWidth];
+        for (int i = 0; i < beamWidth; i++) {
+            generators[i] = new MoveGenerator(width, height);
+            scratch[i] = new GameGrid(width, height);
+            beam[i] = new GameGrid(width, height);
+            nextBeam[i] = new GameGrid(width, height);
+        }
+        this.beamRewards = new double[beamWidth];
+        this.nextRewards = new double[beamWidth];
+        this.beamRoots = new int[beamWidth];
+        this.nextRoots = new int[beamWidth];
+        
+        this.candidateCounts = new int[beamWidth];
+        this.candidatePlacements = new int[beamWidth * maxPlacements];
+        this.candidateValues = new double[beamWidth * maxPlacements];
+        this.candidateRewards = new double[beamWidth * maxPlacements];
+        this.candidateKeys = new long[beamWidth * maxPlacements];
+        this.heap = new int[beamWidth];
+    }
+    
+    /**
+     * Searches for the best placement of a block.
+     * 
+     * @param grid The board, left unchanged
+     * @param block The block to place, searched from its current pose
+     * @param preview The upcoming block types; only the first depth - 1 are used
+     * @param previewSize The number of valid entries in preview
+     * @param budgetNanos The time budget of the search
+     * @return The best placement, or -1 if the block cannot be placed
+     */
+    public int search(GameGrid grid, Block block, int[] preview, int previewSize, long budgetNanos) {
+        long start = System.nanoTime();
+        deadline = start + budgetNanos;
+        timedOut = false;
+        nodes.set(0);
+        duplicates.set(0);
+        searches++;
+        bestPlacement = -1;
+        if (table != null) {
+            table.newSearch();
+        }
+        depthReached = 0;
+        
+        beam[0].copyFrom(grid);
+        beamRewards[0] = 0;
+        beamRoots[0] = -1;
+        beamSize = 1;
+        
+        int plies = Math.min(depth, previewSize + 1);
+        for (int ply = 0; ply < plies; ply++) {
+            if (ply > 0 && System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                break;
+            }
+            int type = ply == 0 ? block.getType() : preview[ply - 1];
+            pool.invoke(new ExpandTask(ply, type, block, 0, beamSize));
+            if (ply > 0 && timedOut) {
+                break;
+            }
+            if (!select(ply)) {
+                break;
+            }
+            depthReached = ply + 1;
+        }
+        
+        elapsedNanos = System.nanoTime() - start;
+        return bestPlacement;
+    }
+    
+    /**
+     * Expands one board of the beam into candidates.
+     * 
+     * @param ply The current ply
+     * @param type The type of the ply's piece
+     * @param block The block of the first ply, searched from its pose
+     * @param node The index of the board in the beam
+     */
+    private void expand(int ply, int type, Block block, int node) {
+        candidateCounts[node] = 0;
+        if (ply > 0 && System.nanoTime() - deadline > 0) {
+            timedOut = true;
+            return;
+        }
+        
+        MoveGenerator generator = generators[node];
+        GameGrid board = scratch[node];
+        GameGrid parent = beam[node];
+        int count = ply == 0 ? generator.generate(parent, block) : generator.generate(parent, type);
+        int offset = node * maxPlacements;
+        // Keys are salted per search and ply, so entries of other searches never match
+        long plyKey = GameGrid.mix(searches * GameGrid.GOLDEN_GAMMA + ply);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int placement = generator.getPlacement(i);
+            board.copyFrom(parent);
+            Placement.lock(placement, board);
+            int lines = board.clearLines();
+            double value = beamRewards[node] + evaluator.evaluate(board, placement, lines);
+            long key = board.getHash() ^ plyKey;
+            int root = ply == 0 ? placement : beamRoots[node];
+            if (table != null) {
+                // Another board of this ply already reached the same stack at least as well
+                long entry = table.probe(key);
+                if (entry != TranspositionTable.MISS && TranspositionTable.getScore(entry) >= (float) value) {
+                    duplicates.incrementAndGet();
+                    continue;
+                }
+                table.store(key, value, root, ply);
+            }
+            int slot = offset + kept++;
+            candidatePlacements[slot] = placement;
+            candidateValues[slot] = value;
+            candidateRewards[slot] = beamRewards[node] + lineWeight * lines;
+            candidateKeys[slot] = key;
+        }
+        candidateCounts[node] = kept;
+        nodes.addAndGet(count);
+    }
+    
+    /**
+     * Keeps the best candidates of a ply as the next beam.
+     * 
+     * @param ply The current ply
+     * @return false if there were no candidates at all
+     */
+    private boolean select(int ply) {
+        // A min-heap of candidate slots on their value holds the best beamWidth so far
+        int size = 0;
+        for (int node = 0; node < beamSize; node++) {
+            int offset = node * maxPlacements;
+            for (int i = 0; i < candidateCounts[node]; i++) {
+                int slot = offset + i;
+                if (size < beamWidth) {
+                    if (table != null && isBeaten(slot)) {
+                        continue;
+                    }
+                    heap[size] = slot;
+                    siftUp(size++);
+                } else if (candidateValues[slot] > candidateValues[heap[0]] && (table == null || !isBeaten(slot))) {
+                    heap[0] = slot;
+                    siftDown(0, size);
+                }
+            }
+        }
+        if (size == 0) {
+            return false;
+        }
+        
+        // Ties go to the lowest slot, so the heap order never changes the result
+        double bestValue = Double.NEGATIVE_INFINITY;
+        int bestSlot = Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            int slot = heap[k];
+            int parent = slot / maxPlacements;
+            int placement = candidatePlacements[slot];
+            nextBeam[k].copyFrom(beam[parent]);
+            Placement.lock(placement, nextBeam[k]);
+            nextBeam[k].clearLines();
+            nextRewards[k] = candidateRewards[slot];
+            nextRoots[k] = ply == 0 ? placement : beamRoots[parent];
+            if (candidateValues[slot] > bestValue || (candidateValues[slot] == bestValue && slot < bestSlot)) {
+                bestValue = candidateValues[slot];
+                bestSlot = slot;
+                bestPlacement = nextRoots[k];
+            }
+        }
+        
+        GameGrid[] grids = beam;
+        beam = nextBeam;
+        nextBeam = grids;
+        double[] rewards = beamRewards;
+        beamRewards = nextRewards;
+        nextRewards = rewards;
+        int[] roots = beamRoots;
+        beamRoots = nextRoots;
+        nextRoots = roots;
+        beamSize = size;
+        return true;
+    }
+    
+    /**
+     * Checks if a later board of the same ply stored a better value for the
+     * same stack, which happens when boards are expanded in parallel.
+     * 
+     * @param slot The candidate slot
+     * @return true if the candidate is a worse duplicate
+     */
+    private boolean isBeaten(int slot) {
+        long entry = table.probe(candidateKeys[slot]);
+        return entry != TranspositionTable.MISS && TranspositionTable.getScore(entry) > (float) candidateValues[slot];
+    }
+    
+    /**
+     * Restores the heap order upwards from a position.
+     * 
+     * @param k The position
+     */
+    private void siftUp(int k) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (candidateValues[heap[parent]] <= candidateValues[heap[k]]) {
+                break;
+            }
+            swap(parent, k);
+            k = parent;
+        }
+    }
+    
+    /**
+     * Restores the heap order downwards from a position.
+     * 
+     * @param k The position
+     * @param size The heap size
+     */
+    private void siftDown(int k, int size) {
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && candidateValues[heap[child + 1]] < candidateValues[heap[child]]) {
+                child++;
+            }
+            if (candidateValues[heap[k]] <= candidateValues[heap[child]]) {
+                break;
+            }
+            swap(k, child);
+            k = child;
+        }
+    }
+    
+    /**
+     * Swaps two heap entries.
+     * 
+     * @param a The first position
+     * @param b The second position
+     */
+    private void swap(int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+    
+    /**
+     * Writes the input sequence leading to the placement of the last search.
+     * 
+     * @param grid The board the search ran on
+     * @param block The block the search ran for, still in its start pose
+     * @param path Receives the InputFrame bits; must hold {@link #getMaxPathLength()} entries
+     * @return The number of inputs written, or -1 if the search found no placement
+     */
+    public int getPath(GameGrid grid, Block block, int[] path) {
+        if (bestPlacement < 0) {
+            return -1;
+        }
+        int count = rootGenerator.generate(grid, block);
+        for (int i = 0; i < count; i++) {
+            if (rootGenerator.getPlacement(i) == bestPlacement) {
+                return rootGenerator.getPath(i, path);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets the longest path a search on this grid size can produce.
+     * 
+     * @return The maximum path length
+     */
+    public int getMaxPathLength() {
+        return rootGenerator.getMaxPathLength();
+    }
+    
+    /**
+     * Gets the number of plies the last search completed.
+     * 
+     * @return The depth reached, from 0 to the configured depth
+     */
+    public int getDepthReached() {
+        return depthReached;
+    }
+    
+    /**
+     * Checks if the last search ran out of time before reaching its depth.
+     * 
+     * @return true if the budget cut the search short
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+    
+    /**
+     * Gets the number of boards the last search evaluated.
+     * 
+     * @return The node count
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+    
+    /**
+     * Gets the number of boards the last search dropped as worse duplicates.
+     * 
+     * @return The duplicate count
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+    
+    /**
+     * Gets the wall-clock time the last search took.
+     * 
+     * @return The duration in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Sets the table used to drop duplicate boards within a ply. Different
+     * placement sequences often build the same stack; without a table they
+     * crowd the beam with copies of one board.
+     * 
+     * @param table The table, or null to keep duplicates
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+    
+    /**
+     * Gets the table used to drop duplicate boards.
+     * 
+     * @return The table, or null if none is set
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+    
+    /**
+     * Expands a range of beam boards, splitting it in halves until one is left.
+     */
+    private final class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final int ply;
+        private final int type;
+        private final Block block;
+        private final int from;
+        private final int to;
+        
+        ExpandTask(int ply, int type, Block block, int from, int to) {
+            this.ply = ply;
+            this.type = type;
+            this.block = block;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                expand(ply, type, block, from);
+                return;
+            }
+            if (to > from) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ExpandTask(ply, type, block, from, mid),
+                          new ExpandTask(ply, type, block, mid, to));
+            }
+        }
+    }
+}
+
+/**
+ * BeamBot plays with a BeamSearch over the current piece and the engine's
+ * preview, under a fixed time budget per piece.
+ */
+class BeamBot extends PlanningBot {
+    private final BeamSearch search;
+    private final long budgetNanos;
+    private final int[] preview = new int[GameEngine.MAX_PREVIEW];
+    private long searches;
+    private long timeouts;
+    
+    /**
+     * Creates a new BeamBot.
+     * 
+     * @param search The search to plan with, owned by this bot
+     * @param budgetNanos The time budget per piece
+     */
+    public BeamBot(BeamSearch search, long budgetNanos) {
+        super(search.getMaxPathLength());
+        this.search = search;
+        this.budgetNanos = budgetNanos;
+    }
+    
+    @Override
+    protected int plan(GameEngine engine, Block block, int[] path) {
+        int previewSize = engine.getPreviewSize();
+        for (int i = 0; i < previewSize; i++) {
+            preview[i] = engine.getPreview(i);
+        }
+        search.search(engine.getGrid(), block, preview, previewSize, budgetNanos);
+        searches++;
+        if (search.isTimedOut()) {
+            timeouts++;
+        }
+        return search.getPath(engine.getGrid(), block, path);
+    }
+    
+    /**
+     * Gets the number of searches run so far.
+     * 
+     * @return The search count
+     */
+    public long getSearches() {
+        return searches;
+    }
+    
+    /**
+     * Gets the number of searches cut short by the time budget.
+     * 
+     * @return The timeout count
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+}
+
+/**
+ * MonteCarloSearch is a parallel Monte Carlo tree search over placements.
+ * The tree alternates piece nodes, whose children are the reachable
+ * placements of one piece, and placement nodes, whose children are the
+ * pieces that can come next: the known one while the preview lasts, all
+ * seven after that. Unknown pieces are sampled from a RandomPieceSource per
+ * worker, the same generator the engine draws from, so the search sees the
+ * real piece distribution without peeking at the real sequence.
+ * 
+ * New placements start with one visit valued by the BoardEvaluator, and a
+ * rollout then plays a few more pieces greedily. Values are normalized by
+ * the range seen so far before UCT compares them. All workers share one
+ * preallocated tree whose statistics are plain atomics: visits and value
+ * sums are updated without locks, a pending visit counts as a loss until it
+ * is backed up, and nodes are expanded by whichever worker wins a CAS.
+ */
+class MonteCarloSearch {
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+    private static final int LEAF = 3;
+    
+    private static final int ROOT = 0;
+    private static final int MAX_PLIES = 32;
+    private static final int DEFAULT_CAPACITY = 1 << 18;
+    private static final double VALUE_SCALE = 1 << 10;
+    private static final double TOP_OUT = -10_000;
+    
+    private final BoardEvaluator evaluator;
+    private final double lineWeight;
+    private final int rolloutDepth;
+    private final double exploration;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private final MoveGenerator rootGenerator;
+    private final Worker[] workers;
+    
+    private final int[] moves;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final AtomicIntegerArray states;
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray pending;
+    private final AtomicLongArray sums;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong minValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+    
+    private final GameGrid rootGrid;
+    private Block rootBlock;
+    private final int[] preview = new int[GameEngine.MAX_PREVIEW];
+    private int previewSize;
+    private long deadline;
+    private long searches;
+    private int bestPlacement;
+    private long rollouts;
+    private int depthReached;
+    private long elapsedNanos;
+    
+    /**
+     * Creates a new MonteCarloSearch running on the common ForkJoinPool.
+     * 
+     * @param evaluator The evaluator scoring the boards
+     * @param width The grid width
+     * @param height The grid height
+     * @param rolloutDepth The number of pieces a rollout plays past a new node
+     * @param exploration The UCT exploration constant, on values normalized to [0, 1]
+     * @param seed The seed the unknown pieces are sampled from
+     */
+    public MonteCarloSearch(BoardEvaluator evaluator, int width, int height, int rolloutDepth, double exploration, long seed) {
+        this(evaluator, width, height, rolloutDepth, exploration, seed, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Creates a new MonteCarloSearch running one worker per thread of the given pool.
+     * 
+     * @param evaluator The evaluator scoring the boards
+     * @param width The grid width
+     * @param height The grid height
+     * @param rolloutDepth The number of pieces a rollout plays past a new node
+     * @param exploration The UCT exploration constant, on values normalized to [0, 1]
+     * @param seed The seed the unknown pieces are sampled from
+     * @param pool The pool the workers run on
+     */
+    public MonteCarloSearch(BoardEvaluator evaluator, int width, int height, int rolloutDepth, double exploration,
+                            long seed, ForkJoinPool pool) {
+        if (rolloutDepth < 0 || !(exploration >= 0)) {
+            throw new IllegalArgumentException("Unsupported search: rollout depth " + rolloutDepth
+                    + ", exploration " + exploration);
+        }
+        this.evaluator = evaluator;
+        this.lineWeight = evaluator.getWeights()[BoardEvaluator.LINES];
+        this.rolloutDepth = rolloutDepth;
+        this.exploration = exploration;
+        this.seed = seed;
+        this.pool = pool;
+        this.rootGenerator = new MoveGenerator(width, height);
+        this.rootGrid = new GameGrid(width, height);
+        
+        this.workers = new Worker[pool.getParallelism()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(width, height);
+        }
+        
+        this.moves = new int[DEFAULT_CAPACITY];
+        this.firstChild = new int[DEFAULT_CAPACITY];
+        this.childCount = new int[DEFAULT_CAPACITY];
+        this.states = new AtomicIntegerArray(DEFAULT_CAPACITY);
+        this.visits = new AtomicIntegerArray(DEFAULT_CAPACITY);
+        this.pending = new AtomicIntegerArray(DEFAULT_CAPACITY);
+        this.sums = new AtomicLongArray(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Searches for the best placement of a block until the budget runs out.
+     * 
+     * @param grid The board, left unchanged
+     * @param block The block to place, searched from its current pose
+     * @param preview The upcoming block types; pieces past them are sampled
+     * @param previewSize The number of valid entries in preview
+     * @param budgetNanos The time budget of the search
+     * @return The most visited placement, or -1 if the block cannot be placed
+     */
+    public int search(GameGrid grid, Block block, int[] preview, int previewSize, long budgetNanos) {
+        long start = System.nanoTime();
+        deadline = start + budgetNanos;
+        rootGrid.copyFrom(grid);
+        rootBlock = block;
+        this.previewSize = Math.min(previewSize, this.preview.length);
+        System.arraycopy(preview, 0, this.preview, 0, this.previewSize);
+        minValue.set(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+        maxValue.set(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+        size.set(1);
+        reset(ROOT, block.getType());
+        
+        for (int i = 0; i < workers.length; i++) {
+            Worker worker = workers[i];
+            worker.pieces = new RandomPieceSource(GameGrid.mix(seed + (searches * workers.length + i) * GameGrid.GOLDEN_GAMMA));
+            worker.rollouts = 0;
+            worker.depthReached = 0;
+        }
+        searches++;
+        
+        // The root is expanded up front, so even an empty budget picks the best-valued placement
+        Worker first = workers[0];
+        first.board.copyFrom(rootGrid);
+        expandPiece(first, ROOT, 0, 0);
+        pool.invoke(new SearchTask(0, workers.length));
+        
+        bestPlacement = -1;
+        int bestVisits = 0;
+        double bestMean = Double.NEGATIVE_INFINITY;
+        int from = firstChild[ROOT];
+        for (int child = from; child < from + childCount[ROOT]; child++) {
+            int n = visits.get(child);
+            double mean = mean(child, n);
+            if (n > bestVisits || (n == bestVisits && mean > bestMean)) {
+                bestVisits = n;
+                bestMean = mean;
+                bestPlacement = moves[child];
+            }
+        }
+        
+        rollouts = 0;
+        depthReached = 0;
+        for (Worker worker : workers) {
+            rollouts += worker.rollouts;
+            depthReached = Math.max(depthReached, worker.depthReached);
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return bestPlacement;
+    }
+    
+    /**
+     * Runs iterations on one worker until the deadline.
+     * 
+     * @param worker The worker
+     */
+    private void run(Worker worker) {
+        while (System.nanoTime() - deadline < 0) {
+            iterate(worker);
+            worker.rollouts++;
+        }
+    }
+    
+    /**
+     * Runs one selection, expansion, rollout and backup from the root.
+     * 
+     * @param worker The worker
+     */
+    private void iterate(Worker worker) {
+        GameGrid board = worker.board;
+        board.copyFrom(rootGrid);
+        int[] path = worker.path;
+        int length = 0;
+        path[length++] = ROOT;
+        
+        int node = ROOT;
+        int piece = 0;
+        double reward = 0;
+        double value;
+        while (true) {
+            if (states.get(node) != EXPANDED && !expandPiece(worker, node, piece, reward)) {
+                value = rollout(worker, piece, moves[node], reward, -1, 0);
+                break;
+            }
+            if (childCount[node] == 0) {
+                value = reward + TOP_OUT;
+                break;
+            }
+            
+            int child = select(node);
+            pending.incrementAndGet(child);
+            path[length++] = child;
+            int placement = moves[child];
+            Placement.lock(placement, board);
+            int lines = board.clearLines();
+            piece++;
+            if (states.get(child) != EXPANDED) {
+                expandPlacement(child, piece);
+                value = rollout(worker, piece, -1, reward, placement, lines);
+                break;
+            }
+            
+            reward += lineWeight * lines;
+            node = firstChild[child];
+            if (childCount[child] > 1) {
+                node += worker.pieces.nextType();
+            }
+            path[length++] = node;
+        }
+        worker.depthReached = Math.max(worker.depthReached, piece);
+        
+        if (value > TOP_OUT / 2) {
+            widen(value);
+        }
+        long scaled = Math.round(value * VALUE_SCALE);
+        for (int i = 0; i < length; i++) {
+            int n = path[i];
+            sums.addAndGet(n, scaled);
+            visits.incrementAndGet(n);
+            // Odd entries are placement nodes, which hold a pending visit
+            if ((i & 1) != 0) {
+                pending.decrementAndGet(n);
+            }
+        }
+    }
+    
+    /**
+     * Picks the child of a piece node with the highest UCT score.
+     * 
+     * @param node The piece node
+     * @return The chosen placement node
+     */
+    private int select(int node) {
+        int from = firstChild[node];
+        int to = from + childCount[node];
+        long total = 0;
+        for (int child = from; child < to; child++) {
+            total += visits.get(child) + pending.get(child);
+        }
+        double logTotal = Math.log(total);
+        double min = Double.longBitsToDouble(minValue.get());
+        double range = Double.longBitsToDouble(maxValue.get()) - min;
+        
+        int best = from;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int child = from; child < to; child++) {
+            int n = visits.get(child);
+            int tries = n + pending.get(child);
+            double q = range > 0 ? (mean(child, n) - min) / range : 0.5;
+            q = Math.max(0, Math.min(1, q)) * n / tries;
+            double score = q + exploration * Math.sqrt(logTotal / tries);
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Gets the mean value of a node.
+     * 
+     * @param node The node
+     * @param n The visit count of the node
+     * @return The mean value, or negative infinity if the node has no visits
+     */
+    private double mean(int node, int n) {
+        return n > 0 ? sums.get(node) / VALUE_SCALE / n : Double.NEGATIVE_INFINITY;
+    }
+    
+    /**
+     * Expands a piece node with every reachable placement, each valued once
+     * by the evaluator. Only the worker that wins the CAS expands the node.
+     * 
+     * @param worker The worker, whose board holds the node's position
+     * @param node The piece node
+     * @param piece The index of the node's piece, 0 for the current one
+     * @param reward The line reward collected on the way to the node
+     * @return true if the node is now expanded
+     */
+    private boolean expandPiece(Worker worker, int node, int piece, double reward) {
+        if (!states.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+        MoveGenerator generator = worker.generator;
+        GameGrid board = worker.board;
+        int count = piece == 0 ? generator.generate(board, rootBlock) : generator.generate(board, moves[node]);
+        int from = allocate(count);
+        if (from < 0) {
+            states.set(node, LEAF);
+            return false;
+        }
+        
+        GameGrid scratch = worker.scratch;
+        for (int i = 0; i < count; i++) {
+            int placement = generator.getPlacement(i);
+            scratch.copyFrom(board);
+            Placement.lock(placement, scratch);
+            int lines = scratch.clearLines();
+            double prior = reward + evaluator.evaluate(scratch, placement, lines);
+            widen(prior);
+            reset(from + i, placement);
+            visits.set(from + i, 1);
+            sums.set(from + i, Math.round(prior * VALUE_SCALE));
+        }
+        firstChild[node] = from;
+        childCount[node] = count;
+        // The volatile write publishes the children to every worker that reads the state
+        states.set(node, EXPANDED);
+        return true;
+    }
+    
+    /**
+     * Expands a placement node with the pieces that can follow it.
+     * 
+     * @param node The placement node
+     * @param piece The index of the piece that follows
+     */
+    private void expandPlacement(int node, int piece) {
+        if (!states.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return;
+        }
+        boolean known = piece <= previewSize;
+        int count = known ? 1 : Block.TYPES;
+        int from = piece < MAX_PLIES ? allocate(count) : -1;
+        if (from < 0) {
+            states.set(node, LEAF);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            reset(from + i, known ? preview[piece - 1] : i);
+        }
+        firstChild[node] = from;
+        childCount[node] = count;
+        states.set(node, EXPANDED);
+    }
+    
+    /**
+     * Plays pieces greedily past a leaf and values the final board.
+     * 
+     * @param worker The worker, whose board holds the leaf's position
+     * @param piece The index of the next piece
+     * @param type The type of the next piece if the leaf is a piece node, otherwise -1
+     * @param reward The line reward collected before the last placement
+     * @param placement The last placement, or -1 if the leaf is a piece node
+     * @param lines The number of lines the last placement cleared
+     * @return The value of the rollout
+     */
+    private double rollout(Worker worker, int piece, int type, double reward, int placement, int lines) {
+        int remaining = placement < 0 ? Math.max(1, rolloutDepth) : rolloutDepth;
+        GameGrid board = worker.board;
+        double value = placement < 0 ? 0 : evaluator.evaluate(board, placement, lines);
+        for (; remaining > 0; remaining--, piece++) {
+            if (placement >= 0) {
+                reward += lineWeight * lines;
+            }
+            if (type < 0) {
+                type = piece <= previewSize ? preview[piece - 1] : worker.pieces.nextType();
+            }
+            int count = piece == 0 ? worker.generator.generate(board, rootBlock) : worker.generator.generate(board, type);
+            
+            GameGrid scratch = worker.scratch;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int best = -1;
+            for (int i = 0; i < count; i++) {
+                int candidate = worker.generator.getPlacement(i);
+                scratch.copyFrom(board);
+                Placement.lock(candidate, scratch);
+                int cleared = scratch.clearLines();
+                double candidateValue = evaluator.evaluate(scratch, candidate, cleared);
+                if (candidateValue > bestValue) {
+                    bestValue = candidateValue;
+                    best = candidate;
+                }
+            }
+            if (best < 0) {
+                return reward + TOP_OUT;
+            }
+            Placement.lock(best, board);
+            lines = board.clearLines();
+            placement = best;
+            value = bestValue;
+            type = -1;
+        }
+        return reward + value;
+    }
+    
+    /**
+     * Reserves a contiguous run of nodes.
+     * 
+     * @param count The number of nodes
+     * @return The first node, or -1 if the tree is full
+     */
+    private int allocate(int count) {
+        int from = size.getAndAdd(count);
+        return from + count <= moves.length ? from : -1;
+    }
+    
+    /**
+     * Clears a freshly allocated node.
+     * 
+     * @param node The node
+     * @param move The placement or block type the node stands for
+     */
+    private void reset(int node, int move) {
+        moves[node] = move;
+        firstChild[node] = 0;
+        childCount[node] = 0;
+        states.set(node, UNEXPANDED);
+        visits.set(node, 0);
+        pending.set(node, 0);
+        sums.set(node, 0);
+    }
+    
+    /**
+     * Widens the range of values seen so far to include a value.
+     * 
+     * @param value The value
+     */
+    private void widen(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        long current;
+        while (value < Double.longBitsToDouble(current = minValue.get())
+                && !minValue.compareAndSet(current, bits)) {
+            // Another worker moved the bound, compare again
+        }
+        while (value > Double.longBitsToDouble(current = maxValue.get())
+                && !maxValue.compareAndSet(current, bits)) {
+            // Another worker moved the bound, compare again
+        }
+    }
+    
+    /**
+     * Writes the input sequence leading to the placement of the last search.
+     * 
+     * @param grid The board the search ran on
+     * @param block The block the search ran for, still in its start pose
+     * @param path Receives the InputFrame bits; must hold {@link #getMaxPathLength()} entries
+     * @return The number of inputs written, or -1 if the search found no placement
+     */
+    public int getPath(GameGrid grid, Block block, int[] path) {
+        if (bestPlacement < 0) {
+            return -1;
+        }
+        int count = rootGenerator.generate(grid, block);
+        for (int i = 0; i < count; i++) {
+            if (rootGenerator.getPlacement(i) == bestPlacement) {
+                return rootGenerator.getPath(i, path);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets the longest path a search on this grid size can produce.
+     * 
+     * @return The maximum path length
+     */
+    public int getMaxPathLength() {
+        return rootGenerator.getMaxPathLength();
+    }
+    
+    /**
+     * Gets the number of rollouts the last search ran.
+     * 
+     * @return The rollout count
+     */
+    public long getRollouts() {
+        return rollouts;
+    }
+    
+    /**
+     * Gets the rollout rate of the last search over all workers.
+     * 
+     * @return The rollouts per second
+     */
+    public double getRolloutsPerSecond() {
+        return elapsedNanos > 0 ? rollouts * 1e9 / elapsedNanos : 0;
+    }
+    
+    /**
+     * Gets the deepest piece a rollout of the last search started from.
+     * 
+     * @return The depth in pieces, 1 for the current piece
+     */
+    public int getDepthReached() {
+        return depthReached;
+    }
+    
+    /**
+     * Gets the number of tree nodes the last search used.
+     * 
+     * @return The node count
+     */
+    public int getNodes() {
+        return Math.min(size.get(), moves.length);
+    }
+    
+    /**
+     * Gets the wall-clock time the last search took.
+     * 
+     * @return The duration in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Worker holds the scratch space of one search thread.
+     */
+    private static final class Worker {
+        final GameGrid board;
+        final GameGrid scratch;
+        final MoveGenerator generator;
+        final int[] path = new int[2 * MAX_PLIES + 2];
+        RandomPieceSource pieces;
+        long rollouts;
+        int depthReached;
+        
+        Worker(int width, int height) {
+            this.board = new GameGrid(width, height);
+            this.scratch = new GameGrid(width, height);
+            this.generator = new MoveGenerator(width, height);
+        }
+    }
+    
+    /**
+     * Runs a range of workers, splitting it in halves until one is left.
+     */
+    private final class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final int from;
+        private final int to;
+        
+        SearchTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                run(workers[from]);
+                return;
+            }
+            if (to > from) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SearchTask(from, mid), new SearchTask(mid, to));
+            }
+        }
+    }
+}
+
+/**
+ * MonteCarloBot plays with a MonteCarloSearch under a fixed time budget per
+ * piece, using the engine's preview as the known part of the sequence.
+ */
+class MonteCarloBot extends PlanningBot {
+    private final MonteCarloSearch search;
+    private final long budgetNanos;
+    private final int[] preview = new int[GameEngine.MAX_PREVIEW];
+    private long searches;
+    private long rollouts;
+    private long searchNanos;
+    
+    /**
+     * Creates a new MonteCarloBot.
+     * 
+     * @param search The search to plan with, owned by this bot
+     * @param budgetNanos The time budget per piece
+     */
+    public MonteCarloBot(MonteCarloSearch search, long budgetNanos) {
+        super(search.getMaxPathLength());
+        this.search = search;
+        this.budgetNanos = budgetNanos;
+    }
+    
+    @Override
+    protected int plan(GameEngine engine, Block block, int[] path) {
+        int previewSize = engine.getPreviewSize();
+        for (int i = 0; i < previewSize; i++) {
+            preview[i] = engine.getPreview(i);
+        }
+        search.search(engine.getGrid(), block, preview, previewSize, budgetNanos);
+        searches++;
+        rollouts += search.getRollouts();
+        searchNanos += search.getElapsedNanos();
+        return search.getPath(engine.getGrid(), block, path);
+    }
+    
+    /**
+     * Gets the number of searches run so far.
+     * 
+     * @return The search count
+     */
+    public long getSearches() {
+        return searches;
+    }
+    
+    /**
+     * Gets the number of rollouts run so far.
+     * 
+     * @return The rollout count
+     */
+    public long getRollouts() {
+        return rollouts;
+    }
+    
+    /**
+     * Gets the rollout rate over all searches so far.
+     * 
+     * @return The rollouts per second of search time
+     */
+    public double getRolloutsPerSecond() {
+        return searchNanos > 0 ? rollouts * 1e9 / searchNanos : 0;
+    }
+}
@@ -0,0 +1,518 @@
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * GridBenchmark - A small stand-alone benchmark for GameGrid collision checks.
+ * Compares the bitboard grid against the original boolean array layout on the
+ * same board and the same set of probe positions.
+ * 
+ * @author Tetris Implementation
+ * @version 1.0
+ */
+class GridBenchmark {
+    
+    private static final int GRID_WIDTH = 10;
+    private static final int GRID_HEIGHT = 20;
+    private static final int FILLED_ROWS = 10;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int CHECKS_PER_ROUND = 20_000_000;
+    
+    /**
+     * Runs the benchmark and prints the time per collision check.
+     * 
+     * @param args Command line arguments (unused)
+     */
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        GameGrid grid = new GameGrid(GRID_WIDTH, GRID_HEIGHT);
+        ArrayGrid baseline = new ArrayGrid(GRID_WIDTH, GRID_HEIGHT);
+        
+        // Random settled stack in the bottom rows, never a complete line
+        for (int y = GRID_HEIGHT - FILLED_ROWS; y < GRID_HEIGHT; y++) {
+            int hole = random.nextInt(GRID_WIDTH);
+            for (int x = 0; x < GRID_WIDTH; x++) {
+                if (x != hole && random.nextInt(100) < 70) {
+                    grid.setCell(x, y, 0);
+                    baseline.setCell(x, y);
+                }
+            }
+        }
+        
+        Block[] probes = createProbes(random, 4096);
+        
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += runBitboard(grid, probes);
+            sink += runBaseline(baseline, probes);
+        }
+        
+        long bitboardNanos = 0;
+        long baselineNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += runBitboard(grid, probes);
+            bitboardNanos += System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            sink += runBaseline(baseline, probes);
+            baselineNanos += System.nanoTime() - start;
+        }
+        
+        double checks = (double) CHECKS_PER_ROUND * MEASURED_ROUNDS;
+        double bitboard = bitboardNanos / checks;
+        double arrays = baselineNanos / checks;
+        // Speedups vary a lot between CPUs and JITs, so quote them with the machine they came from
+        System.out.printf("%s %s on %s/%s, %d cores%n", System.getProperty("java.vm.name"),
+                System.getProperty("java.vm.version"), System.getProperty("os.name"),
+                System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors());
+        System.out.printf("boolean[][] grid: %.2f ns/check%n", arrays);
+        System.out.printf("bitboard grid:    %.2f ns/check%n", bitboard);
+        System.out.printf("speedup:          %.2fx (collisions: %d)%n", arrays / bitboard, sink);
+    }
+    
+    /**
+     * Creates blocks of every type and rotation at random positions around the grid,
+     * including positions that poke through the walls and the floor.
+     * Shared with EngineBenchmark, which uses the same grid size.
+     * 
+     * @param random The random source
+     * @param count The number of probes (must be a power of two)
+     * @return The probe blocks
+     */
+    static Block[] createProbes(Random random, int count) {
+        Block[] probes = new Block[count];
+        for (int i = 0; i < count; i++) {
+            Block block = new Block(random.nextInt(Block.TYPES));
+            for (int r = random.nextInt(Block.ROTATIONS); r > 0; r--) {
+                block.rotate();
+            }
+            for (int dx = random.nextInt(GRID_WIDTH + 2) - 4; dx != 0; dx += dx > 0 ? -1 : 1) {
+                if (dx > 0) {
+                    block.moveRight();
+                } else {
+                    block.moveLeft();
+                }
+            }
+            for (int dy = random.nextInt(GRID_HEIGHT); dy > 0; dy--) {
+                block.moveDown();
+            }
+            probes[i] = block;
+        }
+        return probes;
+    }
+    
+    private static long runBitboard(GameGrid grid, Block[] probes) {
+        int mask = probes.length - 1;
+        long hits = 0;
+        for (int i = 0; i < CHECKS_PER_ROUND; i++) {
+            if (grid.checkCollision(probes[i & mask])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+    
+    private static long runBaseline(ArrayGrid grid, Block[] probes) {
+        int mask = probes.length - 1;
+        long hits = 0;
+        for (int i = 0; i < CHECKS_PER_ROUND; i++) {
+            if (grid.checkCollision(probes[i & mask])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+    
+    /**
+     * The original boolean array collision check, kept only as a baseline.
+     */
+    private static final class ArrayGrid {
+        private final int width;
+        private final int height;
+        private final boolean[][] filled;
+        
+        ArrayGrid(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.filled = new boolean[height][width];
+        }
+        
+        void setCell(int x, int y) {
+            filled[y][x] = true;
+        }
+        
+        boolean checkCollision(Block block) {
+            int[][] shape = block.getShape();
+            int blockX = block.getX();
+            int blockY = block.getY();
+            
+            for (int y = 0; y < shape.length; y++) {
+                for (int x = 0; x < shape[y].length; x++) {
+                    if (shape[y][x] == 1) {
+                        int gridX = blockX + x;
+                        int gridY = blockY + y;
+                        
+                        if (gridX < 0 || gridX >= width || gridY >= height) {
+                            return true;
+                        }
+                        if (gridY >= 0 && filled[gridY][gridX]) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
+
+/**
+ * EngineBenchmark - Benchmark harness for the engine hot paths.
+ * Every benchmark runs a number of warmup iterations followed by measured
+ * iterations of fixed duration and reports the average time per operation
+ * with its standard deviation across iterations. All fixtures are built from
+ * fixed seeds, so runs are reproducible on the same machine and JVM.
+ * Grid benchmarks are parameterized by the number of garbage rows at the
+ * bottom of the board.
+ * 
+ * Usage: java EngineBenchmark [filter-regex] [warmup] [iterations] [millis]
+ * 
+ * @author Tetris Implementation
+ * @version 1.0
+ */
+class EngineBenchmark {
+    
+    private static final int GRID_WIDTH = 10;
+    private static final int GRID_HEIGHT = 20;
+    private static final int[] FILL_LEVELS = {0, 5, 10, 15};
+    private static final int[] CLEARED_LINES = {0, 1, 4};
+    private static final int PROBES = 4096;
+    // Largest calibrated batch, so one batch of a nearly free operation cannot run far past the iteration time
+    private static final int MAX_BATCH = 1 << 20;
+    
+    /**
+     * A benchmarked operation, run in batches to keep timer overhead out of the score.
+     */
+    private interface Operation {
+        
+        /**
+         * Runs the operation a number of times.
+         * 
+         * @param ops The number of operations
+         * @return A value derived from the results, folded into a sink
+         */
+        long run(int ops);
+    }
+    
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final long iterationNanos;
+    private final Pattern filter;
+    private long sink;
+    
+    private EngineBenchmark(Pattern filter, int warmupIterations, int measuredIterations, long iterationMillis) {
+        this.filter = filter;
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+    
+    /**
+     * Runs all benchmarks matching the filter.
+     * 
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long millis = args.length > 3 ? Long.parseLong(args[3]) : 500;
+        
+        EngineBenchmark bench = new EngineBenchmark(filter, warmup, iterations, millis);
+        System.out.printf("%-24s %18s %5s %12s %10s  %s%n", "Benchmark", "(param)", "Cnt", "Score", "StdDev", "Units");
+        bench.runAll();
+        System.out.println("(sink " + bench.sink + ")");
+    }
+    
+    private void runAll() {
+        for (int fill : FILL_LEVELS) {
+            GameGrid grid = garbageGrid(fill, 0, 42);
+            Block[] probes = GridBenchmark.createProbes(new Random(7), PROBES);
+            measure("grid.checkCollision", "fill=" + fill, ops -> {
+                long hits = 0;
+                for (int i = 0; i < ops; i++) {
+                    if (grid.checkCollision(probes[i & (PROBES - 1)])) {
+                        hits++;
+                    }
+                }
+                return hits;
+            });
+        }
+        
+        for (int fill : FILL_LEVELS) {
+            GameGrid template = garbageGrid(fill, 0, 42);
+            GameGrid scratch = new GameGrid(GRID_WIDTH, GRID_HEIGHT);
+            Block[] landed = landedProbes(template, new Random(11), PROBES);
+            measure("grid.copyFrom", "fill=" + fill, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    scratch.copyFrom(template);
+                }
+                return scratch.getStackHeight();
+            });
+            measure("grid.copyFrom+lockBlock", "fill=" + fill, ops -> {
+                long height = 0;
+                for (int i = 0; i < ops; i++) {
+                    scratch.copyFrom(template);
+                    scratch.lockBlock(landed[i & (PROBES - 1)]);
+                    height += scratch.getColumnHeight(i % GRID_WIDTH);
+                }
+                return height;
+            });
+        }
+        
+        for (int lines : CLEARED_LINES) {
+            for (int fill : FILL_LEVELS) {
+                // A vertical I dropped into the empty left column completes exactly `lines` rows
+                GameGrid template = garbageGrid(fill, lines, 42);
+                GameGrid scratch = new GameGrid(GRID_WIDTH, GRID_HEIGHT);
+                Block well = new Block(0);
+                well.rotate();
+                for (int x = well.getX(); x > 0; x--) {
+                    well.moveLeft();
+                }
+                while (!template.checkCollision(well)) {
+                    well.moveDown();
+                }
+                well.undoMoveDown();
+                measure("grid.lock+clearLines", "lines=" + lines + ",fill=" + fill, ops -> {
+                    long cleared = 0;
+                    for (int i = 0; i < ops; i++) {
+                        scratch.copyFrom(template);
+                        scratch.lockBlock(well);
+                        cleared += scratch.clearLines();
+                    }
+                    return cleared;
+                });
+            }
+        }
+        
+        for (int fill : FILL_LEVELS) {
+            GameGrid grid = garbageGrid(fill, 0, 42);
+            MoveGenerator generator = new MoveGenerator(GRID_WIDTH, GRID_HEIGHT);
+            measure("movegen.generate", "fill=" + fill, ops -> {
+                long placements = 0;
+                for (int i = 0; i < ops; i++) {
+                    placements += generator.generate(grid, i % Block.TYPES);
+                }
+                return placements;
+            });
+        }
+        
+        TranspositionTable table = new TranspositionTable(16);
+        measure("tt.store", "size=16MB", ops -> {
+            for (int i = 0; i < ops; i++) {
+                table.store(GameGrid.mix(i), i, i & 0xFFFF, i & 31);
+            }
+            return table.getStores();
+        });
+        measure("tt.probe", "size=16MB", ops -> {
+            long found = 0;
+            for (int i = 0; i < ops; i++) {
+                if (table.probe(GameGrid.mix(i & 0xFFFFF)) != TranspositionTable.MISS) {
+                    found++;
+                }
+            }
+            return found;
+        });
+        
+        for (int fill : FILL_LEVELS) {
+            GameGrid grid = garbageGrid(fill, 0, 42);
+            HeuristicBot bot = new HeuristicBot(GRID_WIDTH, GRID_HEIGHT);
+            MoveGenerator generator = bot.getGenerator();
+            int[][] placements = new int[Block.TYPES][];
+            for (int type = 0; type < Block.TYPES; type++) {
+                placements[type] = new int[generator.generate(grid, type)];
+                for (int i = 0; i < placements[type].length; i++) {
+                    placements[type][i] = generator.getPlacement(i);
+                }
+            }
+            measure("bot.evaluate", "fill=" + fill, ops -> {
+                double sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    int[] candidates = placements[i % Block.TYPES];
+                    if (candidates.length > 0) {
+                        sum += bot.evaluate(grid, candidates[i % candidates.length]);
+                    }
+                }
+                return (long) sum;
+            });
+        }
+        
+        Block block = new Block(2);
+        measure("block.rotate+undoRotate", "-", ops -> {
+            long sum = 0;
+            for (int i = 0; i < ops; i++) {
+                block.rotate();
+                sum += block.getRotation();
+                block.undoRotate();
+            }
+            return sum;
+        });
+        
+        GameEngine engine = new GameEngine(GRID_WIDTH, GRID_HEIGHT, 1L);
+        measure("engine.update", "-", ops -> {
+            for (int i = 0; i < ops; i++) {
+                engine.update();
+                if (engine.isGameOver()) {
+                    engine.reset();
+                }
+            }
+            return engine.getPiecesPlaced();
+        });
+        
+        GameEngine ticking = new GameEngine(GRID_WIDTH, GRID_HEIGHT, 1L);
+        measure("engine.step", "-", ops -> {
+            for (int i = 0; i < ops; i++) {
+                ticking.step(1, InputFrame.NONE);
+                if (ticking.isGameOver()) {
+                    ticking.reset();
+                }
+            }
+            return ticking.getPiecesPlaced();
+        });
+        
+        BatchSimulator simulator = new BatchSimulator(GRID_WIDTH, GRID_HEIGHT, Long.MAX_VALUE);
+        long[] seed = {1L};
+        measure("engine.playout(random)", "-", ops -> {
+            long ticks = 0;
+            for (int i = 0; i < ops; i++) {
+                long s = seed[0]++;
+                ticks += simulator.play(s, new RandomPolicy(s)).getTicks();
+            }
+            return ticks;
+        });
+    }
+    
+    /**
+     * Warms up and measures one benchmark, then prints its score.
+     * 
+     * @param name The benchmark name
+     * @param param The parameter description
+     * @param operation The operation to measure
+     */
+    private void measure(String name, String param, Operation operation) {
+        if (!filter.matcher(name).find()) {
+            return;
+        }
+        
+        // Size batches so that one batch takes roughly a millisecond
+        int batch = 1;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 1_000_000L && batch < MAX_BATCH) {
+            sink += operation.run(batch);
+            batch <<= 1;
+        }
+        
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation, batch);
+        }
+        double[] scores = new double[measuredIterations];
+        for (int i = 0; i < measuredIterations; i++) {
+            scores[i] = runIteration(operation, batch);
+        }
+        
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double stdDev = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        
+        System.out.printf("%-24s %18s %5d %12.3f %10.3f  ns/op%n", name, param, scores.length, mean, stdDev);
+    }
+    
+    /**
+     * Runs batches of the operation for one iteration.
+     * 
+     * @param operation The operation
+     * @param batch The number of operations per batch
+     * @return The average time per operation in nanoseconds
+     */
+    private double runIteration(Operation operation, int batch) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += operation.run(batch);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / ops;
+    }
+    
+    /**
+     * Builds a grid with garbage rows at the bottom and the left column kept empty.
+     * The lowest `completeRows` rows are full apart from that column; the garbage
+     * rows above them always have at least one more hole.
+     * 
+     * @param garbageRows The number of garbage rows above the complete rows
+     * @param completeRows The number of rows missing only the left column
+     * @param seed The seed for the hole pattern
+     * @return The grid
+     */
+    private static GameGrid garbageGrid(int garbageRows, int completeRows, long seed) {
+        Random random = new Random(seed);
+        GameGrid grid = new GameGrid(GRID_WIDTH, GRID_HEIGHT);
+        for (int row = 0; row < completeRows + garbageRows; row++) {
+            int y = GRID_HEIGHT - 1 - row;
+            int hole = 1 + random.nextInt(GRID_WIDTH - 1);
+            for (int x = 1; x < GRID_WIDTH; x++) {
+                boolean complete = row < completeRows;
+                if (complete || (x != hole && random.nextInt(100) < 70)) {
+                    grid.setCell(x, y, random.nextInt(Block.TYPES));
+                }
+            }
+        }
+        return grid;
+    }
+    
+    /**
+     * Creates blocks dropped straight down onto the grid from random columns.
+     * 
+     * @param grid The grid to drop onto
+     * @param random The random source
+     * @param count The number of blocks
+     * @return The blocks in their resting positions
+     */
+    private static Block[] landedProbes(GameGrid grid, Random random, int count) {
+        Block[] landed = new Block[count];
+        for (int i = 0; i < count; i++) {
+            Block block;
+            do {
+                block = new Block(random.nextInt(Block.TYPES));
+                for (int r = random.nextInt(Block.ROTATIONS); r > 0; r--) {
+                    block.rotate();
+                }
+                for (int dx = random.nextInt(GRID_WIDTH) - 3; dx != 0; dx += dx > 0 ? -1 : 1) {
+                    if (dx > 0) {
+                        block.moveRight();
+                    } else {
+                        block.moveLeft();
+                    }
+                }
+            } while (grid.checkCollision(block));
+            
+            do {
+                block.moveDown();
+            } while (!grid.checkCollision(block));
+            block.undoMoveDown();
+            landed[i] = block;
+        }
+        return landed;
+    }
+}
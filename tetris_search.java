@@ -0,0 +1,952 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Placement packs a final piece position into a single int, so lists of
+ * placements are plain int arrays. The layout is x in bits 0-7, y in bits
+ * 8-15, rotation in bits 16-17 and block type in bits 18-20.
+ */
+final class Placement {
+    
+    private Placement() {
+    }
+    
+    /**
+     * Packs a placement.
+     * 
+     * @param type The block type (0-6)
+     * @param x The x-coordinate (0-255)
+     * @param y The y-coordinate (0-255)
+     * @param rotation The rotation index (0-3)
+     * @return The packed placement
+     */
+    public static int of(int type, int x, int y, int rotation) {
+        return x | y << 8 | rotation << 16 | type << 18;
+    }
+    
+    /**
+     * Gets the x-coordinate of a placement.
+     * 
+     * @param placement The packed placement
+     * @return The x-coordinate
+     */
+    public static int getX(int placement) {
+        return placement & 0xFF;
+    }
+    
+    /**
+     * Gets the y-coordinate of a placement.
+     * 
+     * @param placement The packed placement
+     * @return The y-coordinate
+     */
+    public static int getY(int placement) {
+        return placement >>> 8 & 0xFF;
+    }
+    
+    /**
+     * Gets the rotation index of a placement.
+     * 
+     * @param placement The packed placement
+     * @return The rotation index (0-3)
+     */
+    public static int getRotation(int placement) {
+        return placement >>> 16 & 3;
+    }
+    
+    /**
+     * Gets the block type of a placement.
+     * 
+     * @param placement The packed placement
+     * @return The block type (0-6)
+     */
+    public static int getType(int placement) {
+        return placement >>> 18 & 7;
+    }
+    
+    /**
+     * Locks the piece of a placement into a grid.
+     * 
+     * @param placement The packed placement
+     * @param grid The grid to lock the piece into
+     */
+    public static void lock(int placement, GameGrid grid) {
+        grid.lockPiece(getType(placement), getRotation(placement), getX(placement), getY(placement));
+    }
+    
+    /**
+     * Formats a placement for logs and debugging.
+     * 
+     * @param placement The packed placement
+     * @return A description such as "T r1 (4, 17)"
+     */
+    public static String toString(int placement) {
+        return "IOTSZJL".charAt(getType(placement)) + " r" + getRotation(placement)
+                + " (" + getX(placement) + ", " + getY(placement) + ")";
+    }
+}
+
+/**
+ * MoveGenerator enumerates every distinct position a piece can lock in,
+ * starting from a given pose and using the moves the engine allows: left,
+ * right, soft drop and clockwise rotation. That includes tucks under
+ * overhangs and rotations into slots that cannot be reached from above.
+ * 
+ * The search is a breadth-first search over (x, y, rotation) states. Which
+ * states are free is precomputed once per rotation and row as bitmasks; a
+ * copy of those masks doubles as the visited bitset, so testing a neighbour
+ * is a single bit test. The queue and parent links live in arrays sized for
+ * the grid, so a search allocates nothing. Placements that fill
+ * the same cells through equivalent rotations are reported once. Gravity is
+ * not modelled; every placement is reachable when the piece falls slowly
+ * enough to make the moves of its path.
+ */
+class MoveGenerator {
+    // A state is (y * ROTATIONS + rotation) << STATE_SHIFT | x, so decoding is shifts only
+    private static final int STATE_SHIFT = 6;
+    
+    private final int width;
+    private final int height;
+    private final long[] free;
+    private final long[] open;
+    private final long[] emitted;
+    private final int[] queue;
+    private final int[] parents;
+    private final byte[] moves;
+    private final int[] placements;
+    private final int[] placementStates;
+    private int count;
+    
+    /**
+     * Creates a new MoveGenerator for grids of the given size.
+     * 
+     * @param width The grid width
+     * @param height The grid height
+     */
+    public MoveGenerator(int width, int height) {
+        int rows = height * Block.ROTATIONS;
+        this.width = width;
+        this.height = height;
+        // One extra grid row stays empty so the row below the floor is never free
+        this.free = new long[rows + Block.ROTATIONS];
+        this.open = new long[rows + Block.ROTATIONS];
+        this.emitted = new long[rows];
+        this.queue = new int[rows * width];
+        this.parents = new int[rows << STATE_SHIFT];
+        this.moves = new byte[rows << STATE_SHIFT];
+        this.placements = new int[rows * width];
+        this.placementStates = new int[rows * width];
+    }
+    
+    /**
+     * Enumerates the placements of a freshly spawned piece.
+     * 
+     * @param grid The grid to place on
+     * @param type The block type (0-6)
+     * @return The number of placements found
+     */
+    public int generate(GameGrid grid, int type) {
+        return generate(grid, type, Block.SPAWN_X, Block.SPAWN_Y, 0);
+    }
+    
+    /**
+     * Enumerates the placements reachable from a block's current pose.
+     * 
+     * @param grid The grid to place on
+     * @param block The block to start from
+     * @return The number of placements found
+     */
+    public int generate(GameGrid grid, Block block) {
+        return generate(grid, block.getType(), block.getX(), block.getY(), block.getRotation());
+    }
+    
+    /**
+     * Enumerates the placements reachable from a pose.
+     * A pose that is off the grid or colliding has no placements.
+     * 
+     * @param grid The grid to place on
+     * @param type The block type (0-6)
+     * @param x The start x-coordinate
+     * @param y The start y-coordinate
+     * @param rotation The start rotation index (0-3)
+     * @return The number of placements found
+     */
+    public int generate(GameGrid grid, int type, int x, int y, int rotation) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid size mismatch: " + grid.getWidth() + "x" + grid.getHeight());
+        }
+        count = 0;
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return 0;
+        }
+        
+        // Pieces only move down, so rows above the start are never visited.
+        // Equivalent rotations have the same footprint and share their masks.
+        for (int r = 0; r < Block.ROTATIONS; r++) {
+            int canonical = Block.canonicalRotation(type, r);
+            for (int row = y; row < height; row++) {
+                int key = row * Block.ROTATIONS + r;
+                free[key] = canonical == r ? grid.getFreePositions(type, r, row)
+                                           : free[row * Block.ROTATIONS + canonical];
+            }
+        }
+        int first = y * Block.ROTATIONS;
+        System.arraycopy(free, first, open, first, free.length - first);
+        Arrays.fill(emitted, first, emitted.length, 0);
+        
+        int start = (first + rotation) << STATE_SHIFT | x;
+        if ((open[first + rotation] >>> x & 1L) == 0) {
+            return 0;
+        }
+        open[first + rotation] &= ~(1L << x);
+        parents[start] = -1;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        
+        // The open masks are free and not yet visited; bits outside the grid are
+        // never set, so moves off the sides need no bounds checks
+        while (head < tail) {
+            int state = queue[head++];
+            int sx = state & ((1 << STATE_SHIFT) - 1);
+            int key = state >>> STATE_SHIFT;
+            
+            int turned = (key & -Block.ROTATIONS) | ((key + 1) & (Block.ROTATIONS - 1));
+            if ((open[turned] >>> sx & 1L) != 0) {
+                tail = visit(turned, sx, state, InputFrame.ROTATE, tail);
+            }
+            if (sx > 0 && (open[key] >>> (sx - 1) & 1L) != 0) {
+                tail = visit(key, sx - 1, state, InputFrame.LEFT, tail);
+            }
+            if ((open[key] >>> (sx + 1) & 1L) != 0) {
+                tail = visit(key, sx + 1, state, InputFrame.RIGHT, tail);
+            }
+            int below = key + Block.ROTATIONS;
+            if ((free[below] >>> sx & 1L) == 0) {
+                emit(type, key, sx, state);
+            } else if ((open[below] >>> sx & 1L) != 0) {
+                tail = visit(below, sx, state, InputFrame.DOWN, tail);
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Marks a state as visited and queues it.
+     * 
+     * @param key The row and rotation of the state, y * ROTATIONS + rotation
+     * @param x The x-coordinate
+     * @param from The state the move was made from
+     * @param move The InputFrame bit of the move
+     * @param tail The current queue tail
+     * @return The new queue tail
+     */
+    private int visit(int key, int x, int from, int move, int tail) {
+        int state = key << STATE_SHIFT | x;
+        open[key] &= ~(1L << x);
+        parents[state] = from;
+        moves[state] = (byte) move;
+        queue[tail] = state;
+        return tail + 1;
+    }
+    
+    /**
+     * Records a landing state, once per set of filled cells.
+     * 
+     * @param type The block type
+     * @param key The row and rotation of the state, y * ROTATIONS + rotation
+     * @param x The x-coordinate
+     * @param state The landing state
+     */
+    private void emit(int type, int key, int x, int state) {
+        int y = key / Block.ROTATIONS;
+        int rotation = key & (Block.ROTATIONS - 1);
+        int canonicalKey = key - rotation + Block.canonicalRotation(type, rotation);
+        long bit = 1L << x;
+        if ((emitted[canonicalKey] & bit) != 0) {
+            return;
+        }
+        emitted[canonicalKey] |= bit;
+        placements[count] = Placement.of(type, x, y, rotation);
+        placementStates[count] = state;
+        count++;
+    }
+    
+    /**
+     * Gets the number of placements found by the last search.
+     * 
+     * @return The placement count
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    /**
+     * Gets a placement found by the last search.
+     * Placements are ordered by the length of their shortest path.
+     * 
+     * @param i The index of the placement
+     * @return The packed placement
+     */
+    public int getPlacement(int i) {
+        return placements[i];
+    }
+    
+    /**
+     * Writes the shortest input sequence leading from the start pose to a
+     * placement, one button per tick. The piece still has to be locked, by
+     * gravity or a hard drop, once the sequence is done.
+     * 
+     * @param i The index of the placement
+     * @param path Receives the InputFrame bits; must hold {@link #getMaxPathLength()} entries
+     * @return The number of inputs written
+     */
+    public int getPath(int i, int[] path) {
+        int length = 0;
+        for (int state = placementStates[i]; parents[state] >= 0; state = parents[state]) {
+            length++;
+        }
+        int at = length;
+        for (int state = placementStates[i]; parents[state] >= 0; state = parents[state]) {
+            path[--at] = moves[state];
+        }
+        return length;
+    }
+    
+    /**
+     * Gets the longest path a search on this grid size can produce.
+     * 
+     * @return The number of states of the search space
+     */
+    public int getMaxPathLength() {
+        return queue.length;
+    }
+    
+    /**
+     * Gets the width of the grids this generator searches.
+     * 
+     * @return The grid width
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * Gets the height of the grids this generator searches.
+     * 
+     * @return The grid height
+     */
+    public int getHeight() {
+        return height;
+    }
+}
+
+/**
+ * Perft counts the leaf positions of the placement tree: every way to place
+ * the first N pieces of a sequence, one after another, with line clears in
+ * between. The counts for fixed seeds are known, so a run checks the move
+ * generator, the collision masks and the rotation tables in one go, and
+ * doubles as a throughput benchmark. The root placements are split across a
+ * ForkJoinPool; the last level is counted in bulk without locking pieces.
+ * 
+ * Usage: java Perft [depth] [seed] [validateDepth]
+ */
+class Perft {
+    
+    // {seed, depth, leaf count} on an empty 10x20 grid
+    private static final long[][] KNOWN_COUNTS = {
+        {1, 4, 192221},
+        {2, 4, 192372},
+        {3, 4, 48926},
+        {42, 4, 368611},
+        {1, 5, 3595480},
+        {42, 5, 13741017}
+    };
+    
+    private final int width;
+    private final int height;
+    private final ForkJoinPool pool;
+    
+    /**
+     * Creates a new Perft running on the common ForkJoinPool.
+     * 
+     * @param width The grid width
+     * @param height The grid height
+     */
+    public Perft(int width, int height) {
+        this(width, height, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Creates a new Perft running on the given pool.
+     * 
+     * @param width The grid width
+     * @param height The grid height
+     * @param pool The pool the root placements are split across
+     */
+    public Perft(int width, int height, ForkJoinPool pool) {
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+    }
+    
+    /**
+     * Counts the leaf positions after placing a number of pieces.
+     * 
+     * @param grid The starting grid, left unchanged
+     * @param pieces The piece sequence, at least depth entries long
+     * @param depth The number of pieces to place
+     * @return The number of distinct placement sequences
+     */
+    public long count(GameGrid grid, int[] pieces, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        return pool.invoke(new RootTask(grid, pieces, depth));
+    }
+    
+    /**
+     * Counts the leaves below one grid on the calling thread.
+     * 
+     * @param grids The scratch grids, grids[ply] holding the position to expand
+     * @param generators One move generator per ply
+     * @param pieces The piece sequence
+     * @param ply The current ply
+     * @param depth The total depth
+     * @return The number of leaves
+     */
+    private static long countFrom(GameGrid[] grids, MoveGenerator[] generators, int[] pieces, int ply, int depth) {
+        MoveGenerator generator = generators[ply];
+        int placements = generator.generate(grids[ply], pieces[ply]);
+        if (ply == depth - 1) {
+            return placements;
+        }
+        
+        long leaves = 0;
+        GameGrid next = grids[ply + 1];
+        for (int i = 0; i < placements; i++) {
+            next.copyFrom(grids[ply]);
+            Placement.lock(generator.getPlacement(i), next);
+            next.clearLines();
+            leaves += countFrom(grids, generators, pieces, ply + 1, depth);
+        }
+        return leaves;
+    }
+    
+    /**
+     * Expands the root and counts each root placement in its own subtask.
+     */
+    private final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        
+        private final GameGrid grid;
+        private final int[] pieces;
+        private final int depth;
+        
+        RootTask(GameGrid grid, int[] pieces, int depth) {
+            this.grid = grid;
+            this.pieces = pieces;
+            this.depth = depth;
+        }
+        
+        @Override
+        protected Long compute() {
+            MoveGenerator generator = new MoveGenerator(width, height);
+            int placements = generator.generate(grid, pieces[0]);
+            if (depth == 1) {
+                return (long) placements;
+            }
+            
+            List<SubtreeTask> subtasks = new ArrayList<>(placements);
+            for (int i = 0; i < placements; i++) {
+                GameGrid child = new GameGrid(width, height);
+                child.copyFrom(grid);
+                Placement.lock(generator.getPlacement(i), child);
+                child.clearLines();
+                subtasks.add(new SubtreeTask(child, pieces, depth));
+            }
+            
+            long leaves = 0;
+            for (SubtreeTask subtask : invokeAll(subtasks)) {
+                leaves += subtask.join();
+            }
+            return leaves;
+        }
+    }
+    
+    /**
+     * Counts the subtree below one root placement with its own scratch space.
+     */
+    private final class SubtreeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        
+        private final GameGrid grid;
+        private final int[] pieces;
+        private final int depth;
+        
+        SubtreeTask(GameGrid grid, int[] pieces, int depth) {
+            this.grid = grid;
+            this.pieces = pieces;
+            this.depth = depth;
+        }
+        
+        @Override
+        protected Long compute() {
+            GameGrid[] grids = new GameGrid[depth];
+            MoveGenerator[] generators = new MoveGenerator[depth];
+            for (int ply = 1; ply < depth; ply++) {
+                grids[ply] = new GameGrid(width, height);
+                generators[ply] = new MoveGenerator(width, height);
+            }
+            grids[1].copyFrom(grid);
+            return countFrom(grids, generators, pieces, 1, depth);
+        }
+    }
+    
+    /**
+     * Walks the placement tree and compares the move generator with a naive
+     * oracle at every node. The oracle checks cells one by one against the
+     * shape arrays, independently of the row masks and the free masks.
+     * 
+     * @param grid The starting grid, left unchanged
+     * @param pieces The piece sequence
+     * @param depth The number of pieces to place
+     * @return The number of nodes where the two disagree
+     */
+    public long validate(GameGrid grid, int[] pieces, int depth) {
+        GameGrid[] grids = new GameGrid[depth];
+        MoveGenerator[] generators = new MoveGenerator[depth];
+        for (int ply = 0; ply < depth; ply++) {
+            grids[ply] = new GameGrid(width, height);
+            generators[ply] = new MoveGenerator(width, height);
+        }
+        grids[0].copyFrom(grid);
+        return validateFrom(grids, generators, pieces, 0, depth);
+    }
+    
+    /**
+     * Validates the subtree below one grid.
+     * 
+     * @param grids The scratch grids, grids[ply] holding the position to expand
+     * @param generators One move generator per ply
+     * @param pieces The piece sequence
+     * @param ply The current ply
+     * @param depth The total depth
+     * @return The number of mismatching nodes
+     */
+    private long validateFrom(GameGrid[] grids, MoveGenerator[] generators, int[] pieces, int ply, int depth) {
+        MoveGenerator generator = generators[ply];
+        GameGrid grid = grids[ply];
+        int placements = generator.generate(grid, pieces[ply]);
+        
+        Set<Long> expected = naivePlacements(grid, pieces[ply]);
+        Set<Long> actual = new HashSet<>();
+        for (int i = 0; i < placements; i++) {
+            actual.add(footprint(generator.getPlacement(i)));
+        }
+        long mismatches = expected.equals(actual) && actual.size() == placements ? 0 : 1;
+        
+        if (ply < depth - 1) {
+            for (int i = 0; i < placements; i++) {
+                grids[ply + 1].copyFrom(grid);
+                Placement.lock(generator.getPlacement(i), grids[ply + 1]);
+                grids[ply + 1].clearLines();
+                mismatches += validateFrom(grids, generators, pieces, ply + 1, depth);
+            }
+        }
+        return mismatches;
+    }
+    
+    /**
+     * Finds the lock positions of a freshly spawned piece the slow way: a
+     * breadth-first search with a hash set, testing every cell of the shape
+     * array against the grid for each move.
+     * 
+     * @param grid The grid to place on
+     * @param type The block type
+     * @return The footprints of all lock positions
+     */
+    private Set<Long> naivePlacements(GameGrid grid, int type) {
+        Set<Long> footprints = new HashSet<>();
+        Set<Integer> seen = new HashSet<>();
+        ArrayDeque<Block> queue = new ArrayDeque<>();
+        Block spawn = new Block(type);
+        if (!fits(grid, spawn)) {
+            return footprints;
+        }
+        queue.add(spawn);
+        seen.add(Placement.of(type, spawn.getX(), spawn.getY(), spawn.getRotation()));
+        
+        while (!queue.isEmpty()) {
+            Block block = queue.poll();
+            for (int move = 0; move < 4; move++) {
+                Block next = new Block(type);
+                next.moveTo(block.getX(), block.getY(), block.getRotation());
+                switch (move) {
+                    case 0: next.rotate(); break;
+                    case 1: next.moveLeft(); break;
+                    case 2: next.moveRight(); break;
+                    default: next.moveDown(); break;
+                }
+                if (fits(grid, next) && seen.add(Placement.of(type, next.getX(), next.getY(), next.getRotation()))) {
+                    queue.add(next);
+                }
+            }
+            Block below = new Block(type);
+            below.moveTo(block.getX(), block.getY() + 1, block.getRotation());
+            if (!fits(grid, below)) {
+                footprints.add(footprint(Placement.of(type, block.getX(), block.getY(), block.getRotation())));
+            }
+        }
+        return footprints;
+    }
+    
+    /**
+     * Checks a block against the grid cell by cell using its shape array.
+     * 
+     * @param grid The grid
+     * @param block The block
+     * @return true if every occupied cell is inside the grid and empty
+     */
+    private boolean fits(GameGrid grid, Block block) {
+        int[][] shape = block.getShape();
+        for (int y = 0; y < shape.length; y++) {
+            for (int x = 0; x < shape[y].length; x++) {
+                if (shape[y][x] == 1) {
+                    int gridX = block.getX() + x;
+                    int gridY = block.getY() + y;
+                    if (gridX < 0 || gridX >= width || gridY >= height || (gridY >= 0 && grid.isFilled(gridX, gridY))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Encodes the cells a placement fills as a bitmask relative to its top row.
+     * 
+     * @param placement The packed placement
+     * @return The footprint, equal for placements that fill the same cells
+     */
+    private long footprint(int placement) {
+        Block block = new Block(Placement.getType(placement));
+        block.moveTo(0, 0, Placement.getRotation(placement));
+        int[][] shape = block.getShape();
+        long cells = 0;
+        for (int y = 0; y < shape.length; y++) {
+            for (int x = 0; x < shape[y].length; x++) {
+                if (shape[y][x] == 1) {
+                    cells |= 1L << (y * 8 + x);
+                }
+            }
+        }
+        return (long) Placement.getY(placement) << 48 | (long) Placement.getX(placement) << 40 | cells;
+    }
+    
+    /**
+     * Draws a piece sequence from a seed, as a game with that seed would.
+     * 
+     * @param seed The seed
+     * @param length The number of pieces
+     * @return The block types
+     */
+    public static int[] pieces(long seed, int length) {
+        RandomPieceSource source = new RandomPieceSource(seed);
+        int[] pieces = new int[length];
+        for (int i = 0; i < length; i++) {
+            pieces[i] = source.nextType();
+        }
+        return pieces;
+    }
+    
+    /**
+     * Checks the known counts, then counts one sequence and reports the speed.
+     * 
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        int validateDepth = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        
+        Perft perft = new Perft(10, 20);
+        GameGrid empty = new GameGrid(10, 20);
+        boolean ok = true;
+        for (long[] known : KNOWN_COUNTS) {
+            long leaves = perft.count(empty, pieces(known[0], (int) known[1]), (int) known[1]);
+            boolean match = leaves == known[2];
+            ok &= match;
+            System.out.printf("seed %d depth %d: %d %s%n", known[0], known[1], leaves, match ? "ok" : "MISMATCH, expected " + known[2]);
+        }
+        
+        int[] sequence = pieces(seed, Math.max(depth, validateDepth));
+        long mismatches = perft.validate(empty, sequence, validateDepth);
+        ok &= mismatches == 0;
+        System.out.printf("oracle to depth %d: %d mismatching nodes%n", validateDepth, mismatches);
+        
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long leaves = perft.count(empty, sequence, d);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("perft(%d) = %d in %.3f s (%.0f nodes/s, %d threads)%n",
+                    d, leaves, seconds, leaves / seconds, perft.pool.getParallelism());
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
+
+/**
+ * TranspositionTable caches search results by 64-bit position hash in a
+ * fixed amount of memory. Each entry is two longs in parallel arrays: the
+ * data word packs the score as a float in bits 0-31, the placement plus one
+ * in bits 32-52 (0 for none), the depth in bits 53-58 and the search
+ * generation in bits 59-63; the key word holds the hash XOR the data word.
+ * 
+ * Entries are found by linear probing within a bucket of four slots. A store
+ * overwrites the same position if it is at least as deep, otherwise it takes
+ * an empty slot, then one from an older search, then the shallowest one.
+ * Threads read and write without locks: a reader accepts a slot only if its
+ * key word XOR its data word gives the hash, so a slot torn by a concurrent
+ * store reads as a miss instead of as another position's data.
+ */
+class TranspositionTable {
+    static final int MAX_DEPTH = 63;
+    static final long MISS = 0;
+    
+    private static final int BUCKET = 4;
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+    private static final int GENERATIONS = 32;
+    private static final long SCORE_MASK = 0xFFFF_FFFFL;
+    private static final long PLACEMENT_MASK = (1L << 21) - 1;
+    
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation = 1;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    
+    /**
+     * Creates a new TranspositionTable.
+     * 
+     * @param megabytes The memory budget; the entry count is the largest power of two that fits
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1 || megabytes > 16384) {
+            throw new IllegalArgumentException("Unsupported table size: " + megabytes + " MB");
+        }
+        int capacity = Integer.highestOneBit((int) Math.min(1 << 30, ((long) megabytes << 20) / ENTRY_BYTES));
+        this.keys = new long[capacity];
+        this.data = new long[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    /**
+     * Starts a new search. Entries of earlier searches stay readable but are
+     * the first to be replaced.
+     */
+    public void newSearch() {
+        // Generation 0 is never used, so a valid data word is never 0
+        generation = generation % (GENERATIONS - 1) + 1;
+    }
+    
+    /**
+     * Looks up a position.
+     * 
+     * @param key The position hash
+     * @return The packed entry, or {@link #MISS} if the position is not stored
+     */
+    public long probe(long key) {
+        probes.increment();
+        int index = (int) key & mask;
+        for (int i = 0; i < BUCKET; i++) {
+            int slot = (index + i) & mask;
+            long entry = data[slot];
+            if (entry != MISS && (keys[slot] ^ entry) == key) {
+                hits.increment();
+                return entry;
+            }
+        }
+        return MISS;
+    }
+    
+    /**
+     * Stores a position, subject to the depth-preferred replacement policy.
+     * 
+     * @param key The position hash
+     * @param score The score of the position
+     * @param placement The best placement found, or -1 for none
+     * @param depth The depth the score was searched to (0-63)
+     */
+    public void store(long key, double score, int placement, int depth) {
+        depth = Math.max(0, Math.min(depth, MAX_DEPTH));
+        long entry = (Float.floatToRawIntBits((float) score) & SCORE_MASK)
+                | ((placement + 1) & PLACEMENT_MASK) << 32
+                | (long) depth << 53
+                | (long) generation << 59;
+        int index = (int) key & mask;
+        int victim = index;
+        int victimRank = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET; i++) {
+            int slot = (index + i) & mask;
+            long old = data[slot];
+            if (old != MISS && (keys[slot] ^ old) == key) {
+                if (getGeneration(old) == generation && getDepth(old) > depth) {
+                    return;
+                }
+                victim = slot;
+                break;
+            }
+            // Empty slots go first, then older searches, then the shallowest entry
+            int rank = old == MISS ? -1 : (getGeneration(old) == generation ? MAX_DEPTH + 1 : 0) + getDepth(old);
+            if (rank < victimRank) {
+                victimRank = rank;
+                victim = slot;
+            }
+        }
+        data[victim] = entry;
+        keys[victim] = key ^ entry;
+        stores.increment();
+    }
+    
+    /**
+     * Gets the score of a packed entry.
+     * 
+     * @param entry The packed entry
+     * @return The score, rounded to float precision
+     */
+    public static float getScore(long entry) {
+        return Float.intBitsToFloat((int) entry);
+    }
+    
+    /**
+     * Gets the placement of a packed entry.
+     * 
+     * @param entry The packed entry
+     * @return The placement, or -1 for none
+     */
+    public static int getPlacement(long entry) {
+        return (int) (entry >>> 32 & PLACEMENT_MASK) - 1;
+    }
+    
+    /**
+     * Gets the depth of a packed entry.
+     * 
+     * @param entry The packed entry
+     * @return The depth (0-63)
+     */
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 53) & MAX_DEPTH;
+    }
+    
+    /**
+     * Gets the search generation of a packed entry.
+     * 
+     * @param entry The packed entry
+     * @return The generation (1-31)
+     */
+    private static int getGeneration(long entry) {
+        return (int) (entry >>> 59);
+    }
+    
+    /**
+     * Empties the table and resets the counters.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+    
+    /**
+     * Gets the number of entries the table can hold.
+     * 
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return data.length;
+    }
+    
+    /**
+     * Gets the memory held by the entry arrays.
+     * 
+     * @return The footprint in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) data.length * ENTRY_BYTES;
+    }
+    
+    /**
+     * Counts the slots in use by scanning the table.
+     * 
+     * @return The fraction of slots holding an entry
+     */
+    public double getOccupancy() {
+        int used = 0;
+        for (long entry : data) {
+            if (entry != MISS) {
+                used++;
+            }
+        }
+        return (double) used / data.length;
+    }
+    
+    /**
+     * Gets the number of lookups so far.
+     * 
+     * @return The probe count
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+    
+    /**
+     * Gets the number of lookups that found their position.
+     * 
+     * @return The hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * Gets the number of entries written so far.
+     * 
+     * @return The store count
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+    
+    /**
+     * Gets the fraction of lookups that found their position.
+     * 
+     * @return The hit rate, 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long n = probes.sum();
+        return n > 0 ? (double) hits.sum() / n : 0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d entries (%.1f MB), %.1f%% used, %d probes, %.1f%% hits, %d stores",
+                getCapacity(), getMemoryBytes() / 1048576.0, 100 * getOccupancy(),
+                getProbes(), 100 * getHitRate(), getStores());
+    }
+}
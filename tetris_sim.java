@@ -0,0 +1,396 @@
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+
+/**
+ * Policy decides which buttons to hold on each simulation tick.
+ * A policy instance drives a single game and may keep state between calls.
+ */
+interface Policy {
+    
+    /**
+     * Chooses the input for the next tick.
+     * 
+     * @param engine The game being played
+     * @return The input frame to apply
+     */
+    InputFrame nextInput(GameEngine engine);
+}
+
+/**
+ * RandomPolicy presses random buttons, skipping soft drop.
+ * It is the simplest possible load generator for the simulator.
+ */
+class RandomPolicy implements Policy {
+    private final SplittableRandom random;
+    
+    /**
+     * Creates a new RandomPolicy.
+     * 
+     * @param seed The seed for the button choices
+     */
+    public RandomPolicy(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+    
+    @Override
+    public InputFrame nextInput(GameEngine engine) {
+        return InputFrame.of(random.nextInt(16) & ~InputFrame.DOWN);
+    }
+}
+
+/**
+ * BatchSimulator plays many independent headless games in parallel.
+ * Every game gets its own GameEngine, seed and Policy, runs until game over
+ * or until its tick budget is used up, and contributes one entry to the
+ * aggregated BatchResult. Games are split across a ForkJoinPool.
+ */
+class BatchSimulator {
+    private final int width;
+    private final int height;
+    private final long maxTicks;
+    private final ForkJoinPool pool;
+    private int previewSize = 1;
+    
+    /**
+     * Creates a new BatchSimulator running on the common ForkJoinPool.
+     * 
+     * @param width The grid width of every game
+     * @param height The grid height of every game
+     * @param maxTicks The tick budget per game
+     */
+    public BatchSimulator(int width, int height, long maxTicks) {
+        this(width, height, maxTicks, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Creates a new BatchSimulator running on the given pool.
+     * 
+     * @param width The grid width of every game
+     * @param height The grid height of every game
+     * @param maxTicks The tick budget per game
+     * @param pool The pool the games are run on
+     */
+    public BatchSimulator(int width, int height, long maxTicks, ForkJoinPool pool) {
+        this.width = width;
+        this.height = height;
+        this.maxTicks = maxTicks;
+        this.pool = pool;
+    }
+    
+    /**
+     * Gets the grid width of every game.
+     * 
+     * @return The width in cells
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * Gets the grid height of every game.
+     * 
+     * @return The height in cells
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Sets how many upcoming pieces every game shows its policy.
+     * 
+     * @param previewSize The preview size, counting the next block
+     */
+    public void setPreviewSize(int previewSize) {
+        this.previewSize = previewSize;
+    }
+    
+    /**
+     * Runs a number of games with seeds derived from a base seed.
+     * 
+     * @param games The number of games
+     * @param baseSeed The seed of the first game; game i uses baseSeed + i
+     * @param policies Creates the policy for a game from its seed
+     * @return The aggregated statistics
+     */
+    public BatchResult run(int games, long baseSeed, LongFunction<Policy> policies) {
+        long[] seeds = new long[games];
+        for (int i = 0; i < games; i++) {
+            seeds[i] = baseSeed + i;
+        }
+        return run(seeds, policies);
+    }
+    
+    /**
+     * Runs one game per seed.
+     * 
+     * @param seeds The piece sequence seed of each game
+     * @param policies Creates the policy for a game from its seed
+     * @return The aggregated statistics
+     */
+    public BatchResult run(long[] seeds, LongFunction<Policy> policies) {
+        return runIndexed(seeds, game -> policies.apply(seeds[game]));
+    }
+    
+    /**
+     * Runs one game per seed, with the policy chosen by the game's index.
+     * This lets one batch compare several policies on shared seeds.
+     * 
+     * @param seeds The piece sequence seed of each game
+     * @param policies Creates the policy for a game from its index in seeds
+     * @return The aggregated statistics
+     */
+    public BatchResult runIndexed(long[] seeds, IntFunction<Policy> policies) {
+        BatchResult result = new BatchResult(seeds);
+        long start = System.nanoTime();
+        pool.invoke(new GameTask(seeds, policies, result, 0, seeds.length));
+        result.setWallNanos(System.nanoTime() - start);
+        return result;
+    }
+    
+    /**
+     * Plays a single game to completion or to the tick budget.
+     * 
+     * @param seed The piece sequence seed
+     * @param policy The policy playing the game
+     * @return The finished engine
+     */
+    public GameEngine play(long seed, Policy policy) {
+        GameEngine engine = new GameEngine(width, height, seed);
+        engine.setPreviewSize(previewSize);
+        while (!engine.isGameOver() && engine.getTicks() < maxTicks) {
+            engine.step(1, policy.nextInput(engine));
+        }
+        return engine;
+    }
+    
+    /**
+     * Splits a range of games in halves until a single game is left.
+     */
+    private final class GameTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final long[] seeds;
+        private final IntFunction<Policy> policies;
+        private final BatchResult result;
+        private final int from;
+        private final int to;
+        
+        GameTask(long[] seeds, IntFunction<Policy> policies, BatchResult result, int from, int to) {
+            this.seeds = seeds;
+            this.policies = policies;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                GameEngine engine = play(seeds[from], policies.apply(from));
+                result.record(from, engine);
+                return;
+            }
+            if (to > from) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GameTask(seeds, policies, result, from, mid),
+                          new GameTask(seeds, policies, result, mid, to));
+            }
+        }
+    }
+    
+    /**
+     * Runs a batch of games from the command line.
+     * Usage: java BatchSimulator [games] [maxTicks] [baseSeed] [random|heuristic|beam|mcts]
+     * 
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long maxTicks = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000L;
+        long baseSeed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+        String policy = args.length > 3 ? args[3] : "random";
+        
+        BatchSimulator simulator = new BatchSimulator(10, 20, maxTicks);
+        LongFunction<Policy> policies;
+        if (policy.equals("heuristic")) {
+            policies = seed -> new HeuristicBot(10, 20);
+        } else if (policy.equals("beam")) {
+            // Beam width 16 over the current piece and 4 previews, 1 ms per piece, duplicates dropped
+            simulator.setPreviewSize(4);
+            policies = seed -> {
+                BeamSearch search = new BeamSearch(new BoardEvaluator(), 10, 20, 16, 5);
+                search.setTranspositionTable(new TranspositionTable(1));
+                return new BeamBot(search, 1_000_000L);
+            };
+        } else if (policy.equals("mcts")) {
+            // Tree search over the same preview, 2 greedy rollout pieces, 1 ms per piece
+            simulator.setPreviewSize(4);
+            policies = seed -> new MonteCarloBot(new MonteCarloSearch(new BoardEvaluator(), 10, 20, 2, 0.5, seed), 1_000_000L);
+        } else {
+            policies = RandomPolicy::new;
+        }
+        BatchResult result = simulator.run(games, baseSeed, policies);
+        System.out.println(result);
+    }
+}
+
+/**
+ * BatchResult holds the outcome of every game in a batch and summarizes
+ * score, lines, pieces and game length as distributions.
+ */
+class BatchResult {
+    
+    /**
+     * The per-game quantities a batch reports on.
+     */
+    enum Metric {
+        SCORE, LINES, PIECES, TICKS
+    }
+    
+    private final long[] seeds;
+    private final long[][] values;
+    private final boolean[] finished;
+    private long wallNanos;
+    
+    /**
+     * Creates a new, empty BatchResult.
+     * 
+     * @param seeds The seeds of the games in the batch
+     */
+    BatchResult(long[] seeds) {
+        this.seeds = seeds.clone();
+        this.values = new long[Metric.values().length][seeds.length];
+        this.finished = new boolean[seeds.length];
+    }
+    
+    /**
+     * Records the final state of one game. Each index is written by exactly one task.
+     * 
+     * @param game The index of the game
+     * @param engine The finished engine
+     */
+    void record(int game, GameEngine engine) {
+        values[Metric.SCORE.ordinal()][game] = engine.getScore();
+        values[Metric.LINES.ordinal()][game] = engine.getLinesCleared();
+        values[Metric.PIECES.ordinal()][game] = engine.getPiecesPlaced();
+        values[Metric.TICKS.ordinal()][game] = engine.getTicks();
+        finished[game] = engine.isGameOver();
+    }
+    
+    /**
+     * Sets the wall-clock time the batch took.
+     * 
+     * @param wallNanos The duration in nanoseconds
+     */
+    void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+    
+    /**
+     * Gets the number of games in the batch.
+     * 
+     * @return The game count
+     */
+    public int getGames() {
+        return seeds.length;
+    }
+    
+    /**
+     * Gets the seed of one game, to replay it.
+     * 
+     * @param game The index of the game
+     * @return The seed
+     */
+    public long getSeed(int game) {
+        return seeds[game];
+    }
+    
+    /**
+     * Gets a metric of one game.
+     * 
+     * @param metric The metric
+     * @param game The index of the game
+     * @return The value
+     */
+    public long get(Metric metric, int game) {
+        return values[metric.ordinal()][game];
+    }
+    
+    /**
+     * Checks if a game ended by topping out rather than by running out of ticks.
+     * 
+     * @param game The index of the game
+     * @return true if the game is over, false if it hit the tick budget
+     */
+    public boolean isFinished(int game) {
+        return finished[game];
+    }
+    
+    /**
+     * Summarizes a metric over all games.
+     * 
+     * @param metric The metric
+     * @return The count, min, max, sum and average
+     */
+    public LongSummaryStatistics summary(Metric metric) {
+        return Arrays.stream(values[metric.ordinal()]).summaryStatistics();
+    }
+    
+    /**
+     * Gets a percentile of a metric over all games (nearest rank).
+     * 
+     * @param metric The metric
+     * @param percent The percentile, from 0 to 100
+     * @return The value at that percentile
+     */
+    public long percentile(Metric metric, double percent) {
+        long[] sorted = values[metric.ordinal()].clone();
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+    
+    /**
+     * Gets the wall-clock time the batch took.
+     * 
+     * @return The duration in nanoseconds
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+    
+    /**
+     * Gets the simulation throughput.
+     * 
+     * @return The number of games finished per second of wall-clock time
+     */
+    public double getGamesPerSecond() {
+        return wallNanos == 0 ? 0 : seeds.length * 1e9 / wallNanos;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d games in %.2f s (%.1f games/s)%n",
+                seeds.length, wallNanos / 1e9, getGamesPerSecond()));
+        if (seeds.length == 0) {
+            // An empty summary would print Long.MAX_VALUE and Long.MIN_VALUE as min and max
+            return sb.toString();
+        }
+        for (Metric metric : Metric.values()) {
+            LongSummaryStatistics stats = summary(metric);
+            sb.append(String.format("%-7s mean %12.1f  min %10d  p50 %10d  p90 %10d  p99 %10d  max %10d%n",
+                    metric.name().toLowerCase(), stats.getAverage(), stats.getMin(),
+                    percentile(metric, 50), percentile(metric, 90), percentile(metric, 99), stats.getMax()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,389 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * WeightTuner evolves BoardEvaluator weights with a genetic algorithm.
+ * Every generation plays each weight vector with a HeuristicBot on the same
+ * set of seeds, so fitness values within a generation are directly
+ * comparable. The seeds change from one generation to the next and are
+ * derived from the base seed, as is all breeding randomness, so a run is
+ * fully reproducible. All games of a generation go to the simulator as one
+ * batch and are spread over every core of its pool.
+ * 
+ * Breeding follows the usual recipe for Tetris evaluators: a random tenth of
+ * the population holds a tournament, the two winners are averaged weighted
+ * by fitness, the child is occasionally mutated in one feature, and the
+ * children replace the worst 30%. Weight vectors are kept at unit length,
+ * since only their direction changes which placement a bot picks.
+ * 
+ * The population is checkpointed to disk after every generation, and a run
+ * started with an existing checkpoint resumes from it.
+ * 
+ * Usage: java WeightTuner [generations] [population] [gamesPerWeights] [maxTicks] [checkpoint] [baseSeed]
+ */
+class WeightTuner {
+    private static final double TOURNAMENT_SHARE = 0.1;
+    private static final double OFFSPRING_SHARE = 0.3;
+    private static final double MUTATION_RATE = 0.05;
+    private static final double MUTATION_STEP = 0.2;
+    private static final String CHECKPOINT_HEADER = "# WeightTuner checkpoint";
+    
+    private final BatchSimulator simulator;
+    private final int gamesPerWeights;
+    private final BatchResult.Metric metric;
+    private final long baseSeed;
+    private double[][] population;
+    private double[] fitness;
+    private int generation;
+    
+    /**
+     * Creates a new WeightTuner with a random population.
+     * 
+     * @param simulator The simulator the games run on
+     * @param populationSize The number of weight vectors
+     * @param gamesPerWeights The number of games each weight vector plays per generation
+     * @param metric The per-game result whose mean is the fitness
+     * @param baseSeed The seed all game seeds and breeding choices derive from
+     */
+    public WeightTuner(BatchSimulator simulator, int populationSize, int gamesPerWeights,
+                       BatchResult.Metric metric, long baseSeed) {
+        if (populationSize < 2 || gamesPerWeights < 1) {
+            throw new IllegalArgumentException("Unsupported tuner: population " + populationSize
+                    + ", games " + gamesPerWeights);
+        }
+        this.simulator = simulator;
+        this.gamesPerWeights = gamesPerWeights;
+        this.metric = metric;
+        this.baseSeed = baseSeed;
+        
+        SplittableRandom random = new SplittableRandom(GameGrid.mix(baseSeed));
+        this.population = new double[populationSize][];
+        for (int i = 0; i < populationSize; i++) {
+            double[] weights = new double[BoardEvaluator.FEATURES];
+            for (int f = 0; f < weights.length; f++) {
+                weights[f] = random.nextDouble(-1, 1);
+            }
+            population[i] = normalize(weights);
+        }
+        this.fitness = new double[populationSize];
+        Arrays.fill(fitness, Double.NaN);
+    }
+    
+    /**
+     * Plays every weight vector on this generation's seeds and records its fitness.
+     * 
+     * @return The results of all games, weight vector i owning games
+     *         i * gamesPerWeights up to (i + 1) * gamesPerWeights
+     */
+    public BatchResult evaluate() {
+        long firstSeed = getSeed(generation);
+        long[] seeds = new long[population.length * gamesPerWeights];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = firstSeed + i % gamesPerWeights;
+        }
+        
+        int width = simulator.getWidth();
+        int height = simulator.getHeight();
+        BoardEvaluator[] evaluators = new BoardEvaluator[population.length];
+        for (int i = 0; i < population.length; i++) {
+            evaluators[i] = new BoardEvaluator(population[i]);
+        }
+        BatchResult result = simulator.runIndexed(seeds,
+                game -> new HeuristicBot(evaluators[game / gamesPerWeights], width, height));
+        
+        for (int i = 0; i < population.length; i++) {
+            long sum = 0;
+            for (int game = i * gamesPerWeights; game < (i + 1) * gamesPerWeights; game++) {
+                sum += result.get(metric, game);
+            }
+            fitness[i] = (double) sum / gamesPerWeights;
+        }
+        return result;
+    }
+    
+    /**
+     * Replaces the weakest weight vectors with children of tournament winners
+     * and moves on to the next generation. Requires an evaluated population.
+     */
+    public void evolve() {
+        int size = population.length;
+        double floor = Double.POSITIVE_INFINITY;
+        for (double f : fitness) {
+            if (Double.isNaN(f)) {
+                throw new IllegalStateException("Generation " + generation + " has not been evaluated");
+            }
+            floor = Math.min(floor, f);
+        }
+        SplittableRandom random = new SplittableRandom(GameGrid.mix(baseSeed - (generation + 1) * GameGrid.GOLDEN_GAMMA));
+        int tournament = Math.max(2, (int) (size * TOURNAMENT_SHARE));
+        int offspring = Math.max(1, (int) (size * OFFSPRING_SHARE));
+        
+        double[][] children = new double[offspring][];
+        for (int c = 0; c < offspring; c++) {
+            // Partial Fisher-Yates draws the tournament without repeats
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int first = -1;
+            int second = -1;
+            for (int i = 0; i < tournament; i++) {
+                int j = i + random.nextInt(size - i);
+                int pick = order[j];
+                order[j] = order[i];
+                order[i] = pick;
+                if (first < 0 || fitness[pick] > fitness[first]) {
+                    second = first;
+                    first = pick;
+                } else if (second < 0 || fitness[pick] > fitness[second]) {
+                    second = pick;
+                }
+            }
+            // Fitness above the weakest member, so the mixing share stays in [0, 1]
+            children[c] = breed(population[first], fitness[first] - floor, population[second], fitness[second] - floor, random);
+        }
+        
+        // Stable sort by fitness, so equal vectors are replaced in index order
+        Integer[] ranking = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            ranking[i] = i;
+        }
+        Arrays.sort(ranking, (a, b) -> Double.compare(fitness[a], fitness[b]));
+        for (int c = 0; c < offspring; c++) {
+            population[ranking[c]] = children[c];
+            fitness[ranking[c]] = Double.NaN;
+        }
+        generation++;
+    }
+    
+    /**
+     * Crosses two parents and possibly mutates the child.
+     * 
+     * @param a The first parent
+     * @param fitnessA The non-negative fitness of the first parent
+     * @param b The second parent
+     * @param fitnessB The non-negative fitness of the second parent
+     * @param random The breeding randomness
+     * @return The child, at unit length
+     */
+    private static double[] breed(double[] a, double fitnessA, double[] b, double fitnessB, SplittableRandom random) {
+        double total = fitnessA + fitnessB;
+        double shareA = total > 0 ? fitnessA / total : 0.5;
+        double[] child = new double[a.length];
+        for (int f = 0; f < child.length; f++) {
+            child[f] = shareA * a[f] + (1 - shareA) * b[f];
+        }
+        if (random.nextDouble() < MUTATION_RATE) {
+            child[random.nextInt(child.length)] += random.nextDouble(-MUTATION_STEP, MUTATION_STEP);
+        }
+        return normalize(child);
+    }
+    
+    /**
+     * Scales a weight vector to unit length in place.
+     * 
+     * @param weights The weights
+     * @return The same array
+     */
+    private static double[] normalize(double[] weights) {
+        double norm = 0;
+        for (double w : weights) {
+            norm += w * w;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int f = 0; f < weights.length; f++) {
+                weights[f] /= norm;
+            }
+        }
+        return weights;
+    }
+    
+    /**
+     * Gets the seed of the first game of a generation; game i uses this seed plus i.
+     * 
+     * @param generation The generation
+     * @return The seed
+     */
+    public long getSeed(int generation) {
+        return GameGrid.mix(baseSeed + (generation + 1) * GameGrid.GOLDEN_GAMMA);
+    }
+    
+    /**
+     * Gets the index of the fittest evaluated weight vector.
+     * 
+     * @return The index, or -1 if none has been evaluated
+     */
+    public int getBest() {
+        int best = -1;
+        for (int i = 0; i < fitness.length; i++) {
+            if (!Double.isNaN(fitness[i]) && (best < 0 || fitness[i] > fitness[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Gets the weights of one population member.
+     * 
+     * @param i The index of the member
+     * @return A copy of its weights
+     */
+    public double[] getWeights(int i) {
+        return population[i].clone();
+    }
+    
+    /**
+     * Gets the fitness of one population member.
+     * 
+     * @param i The index of the member
+     * @return The mean metric of its last evaluation, or NaN if it has not been evaluated
+     */
+    public double getFitness(int i) {
+        return fitness[i];
+    }
+    
+    /**
+     * Gets the number of weight vectors.
+     * 
+     * @return The population size
+     */
+    public int getPopulationSize() {
+        return population.length;
+    }
+    
+    /**
+     * Gets the current generation, counted from 0.
+     * 
+     * @return The generation
+     */
+    public int getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Writes the population to a checkpoint file. The file is written next
+     * to the target and moved into place, so a crash never leaves a torn one.
+     * 
+     * @param file The checkpoint file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp)) {
+            out.write(CHECKPOINT_HEADER);
+            out.newLine();
+            out.write("generation " + generation);
+            out.newLine();
+            out.write("fitness/weights " + String.join(" ", BoardEvaluator.FEATURE_NAMES));
+            out.newLine();
+            for (int i = 0; i < population.length; i++) {
+                StringBuilder line = new StringBuilder().append(fitness[i]);
+                for (double w : population[i]) {
+                    line.append(' ').append(w);
+                }
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Replaces the population and generation with those of a checkpoint file.
+     * The tuner's own seed and settings are kept, and the checkpoint must hold
+     * as many weight vectors as the tuner was created with.
+     * 
+     * @param file The checkpoint file
+     * @throws IOException If the file cannot be read, is not a checkpoint or has another population size
+     */
+    public void load(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        if (lines.size() < 3 || !lines.get(0).equals(CHECKPOINT_HEADER) || !lines.get(1).startsWith("generation ")) {
+            throw new IOException("Not a WeightTuner checkpoint: " + file);
+        }
+        List<double[]> members = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (String line : lines.subList(3, lines.size())) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length != BoardEvaluator.FEATURES + 1) {
+                throw new IOException("Malformed checkpoint line: " + line);
+            }
+            double[] weights = new double[BoardEvaluator.FEATURES];
+            try {
+                scores.add(Double.parseDouble(fields[0]));
+                for (int f = 0; f < weights.length; f++) {
+                    weights[f] = Double.parseDouble(fields[f + 1]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed checkpoint line: " + line, e);
+            }
+            members.add(weights);
+        }
+        if (members.size() != population.length) {
+            throw new IOException("Checkpoint holds " + members.size() + " weight vectors, expected " + population.length + ": " + file);
+        }
+        int loaded;
+        try {
+            loaded = Integer.parseInt(lines.get(1).substring("generation ".length()).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed checkpoint line: " + lines.get(1), e);
+        }
+        
+        generation = loaded;
+        population = members.toArray(new double[0][]);
+        fitness = new double[scores.size()];
+        for (int i = 0; i < fitness.length; i++) {
+            fitness[i] = scores.get(i);
+        }
+    }
+    
+    /**
+     * Runs the tuner from the command line, resuming from the checkpoint if it exists.
+     * Usage: java WeightTuner [generations] [population] [gamesPerWeights] [maxTicks] [checkpoint] [baseSeed]
+     * 
+     * @param args Command line arguments
+     * @throws IOException If the checkpoint cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int populationSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int gamesPerWeights = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        long maxTicks = args.length > 3 ? Long.parseLong(args[3]) : 5_000L;
+        Path checkpoint = Paths.get(args.length > 4 ? args[4] : "tuner.checkpoint");
+        long baseSeed = args.length > 5 ? Long.parseLong(args[5]) : 1L;
+        
+        BatchSimulator simulator = new BatchSimulator(10, 20, maxTicks);
+        WeightTuner tuner = new WeightTuner(simulator, populationSize, gamesPerWeights, BatchResult.Metric.SCORE, baseSeed);
+        if (Files.exists(checkpoint)) {
+            tuner.load(checkpoint);
+            System.out.printf("Resumed %d weight vectors at generation %d from %s%n",
+                    tuner.getPopulationSize(), tuner.getGeneration(), checkpoint);
+        }
+        
+        while (tuner.getGeneration() < generations) {
+            BatchResult result = tuner.evaluate();
+            int best = tuner.getBest();
+            double mean = 0;
+            for (int i = 0; i < tuner.getPopulationSize(); i++) {
+                mean += tuner.getFitness(i) / tuner.getPopulationSize();
+            }
+            System.out.printf("generation %d: %d games in %.2f s (%.1f games/s), fitness best %.1f mean %.1f%n",
+                    tuner.getGeneration(), result.getGames(), result.getWallNanos() / 1e9,
+                    result.getGamesPerSecond(), tuner.getFitness(best), mean);
+            System.out.println("  best " + Arrays.toString(tuner.getWeights(best)));
+            tuner.evolve();
+            tuner.save(checkpoint);
+        }
+    }
+}